@@ -0,0 +1,103 @@
+package benchmarks;
+
+import com.marcusslover.plus.lib.events.EventInvoker;
+import com.marcusslover.plus.lib.events.EventListener;
+import org.bukkit.event.Event;
+import org.bukkit.event.HandlerList;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cost of calling an event method through an unreflected method handle,
+ * the way events used to be dispatched, with the generated {@link EventInvoker}.
+ * <p>
+ * Run with {@code ./gradlew jmh}.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventDispatchBenchmark {
+    private TestListener listener;
+    private TestEvent event;
+    /* Non-constant on purpose, the same as the handle stored in WrappedListener */
+    private MethodHandle methodHandle;
+    private EventInvoker invoker;
+    private EventInvoker fallbackInvoker;
+
+    @Setup
+    public void setup() throws Throwable {
+        this.listener = new TestListener();
+        this.event = new TestEvent();
+        Method method = TestListener.class.getDeclaredMethod("onEvent", TestEvent.class);
+        method.setAccessible(true);
+        this.methodHandle = MethodHandles.lookup().unreflect(method);
+        this.invoker = EventInvoker.of(method, t -> {
+            throw new IllegalStateException("Could not generate the invoker", t);
+        });
+        MethodHandle exact = this.methodHandle.asType(this.methodHandle.type().changeParameterType(0, Object.class).changeParameterType(1, Event.class));
+        this.fallbackInvoker = (listener, event) -> exact.invokeExact(listener, event);
+    }
+
+    @Benchmark
+    public long methodHandleInvoke() throws Throwable {
+        this.methodHandle.invoke(this.listener, this.event);
+        return this.listener.count;
+    }
+
+    @Benchmark
+    public long generatedInvoker() throws Throwable {
+        this.invoker.invoke(this.listener, this.event);
+        return this.listener.count;
+    }
+
+    @Benchmark
+    public long methodHandleInvokeExact() throws Throwable {
+        this.fallbackInvoker.invoke(this.listener, this.event);
+        return this.listener.count;
+    }
+
+    @Benchmark
+    public long directCall() {
+        this.listener.onEvent(this.event);
+        return this.listener.count;
+    }
+
+    public static class TestEvent extends Event {
+        private static final HandlerList HANDLERS = new HandlerList();
+
+        public static HandlerList getHandlerList() {
+            return HANDLERS;
+        }
+
+        @Override
+        public @NotNull HandlerList getHandlers() {
+            return HANDLERS;
+        }
+    }
+
+    private static class TestListener implements EventListener {
+        private long count;
+
+        private void onEvent(TestEvent event) {
+            this.count++;
+        }
+    }
+}
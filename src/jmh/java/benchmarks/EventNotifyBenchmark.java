@@ -0,0 +1,129 @@
+package benchmarks;
+
+import com.marcusslover.plus.lib.events.EventHandler;
+import com.marcusslover.plus.lib.events.EventListener;
+import org.bukkit.event.Cancellable;
+import org.bukkit.event.Event;
+import org.bukkit.event.HandlerList;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a whole dispatch through {@link EventHandler#notify(Event)}, including the lookup
+ * of the resolved listeners, the cancellation checks and the optional profiling.
+ * <p>
+ * Half of the listeners observe the dispatched event class, the other half its abstract supertype.
+ * Run with {@code ./gradlew jmh}.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventNotifyBenchmark {
+    @Param({"2", "16"})
+    private int listeners;
+    @Param({"false", "true"})
+    private boolean profiling;
+
+    private EventHandler handler;
+    private ChildEvent event;
+    private CancellableEvent cancellableEvent;
+
+    @Setup
+    public void setup() {
+        this.handler = new EventHandler();
+        this.handler.setProfiling(this.profiling);
+        this.event = new ChildEvent();
+        this.cancellableEvent = new CancellableEvent();
+        for (int i = 0; i < this.listeners / 2; i++) {
+            this.handler.subscribe(new TestListener());
+        }
+    }
+
+    @Benchmark
+    public long notifyEvent() {
+        this.handler.notify(this.event);
+        return TestListener.count;
+    }
+
+    @Benchmark
+    public long notifyCancellableEvent() {
+        this.handler.notify(this.cancellableEvent);
+        return TestListener.count;
+    }
+
+    public abstract static class BaseEvent extends Event {
+    }
+
+    public static class ChildEvent extends BaseEvent {
+        private static final HandlerList HANDLERS = new HandlerList();
+
+        public static HandlerList getHandlerList() {
+            return HANDLERS;
+        }
+
+        @Override
+        public @NotNull HandlerList getHandlers() {
+            return HANDLERS;
+        }
+    }
+
+    public static class CancellableEvent extends Event implements Cancellable {
+        private static final HandlerList HANDLERS = new HandlerList();
+        private boolean cancelled;
+
+        public static HandlerList getHandlerList() {
+            return HANDLERS;
+        }
+
+        @Override
+        public @NotNull HandlerList getHandlers() {
+            return HANDLERS;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return this.cancelled;
+        }
+
+        @Override
+        public void setCancelled(boolean cancel) {
+            this.cancelled = cancel;
+        }
+    }
+
+    /* Not injected, the handler is never registered with a plugin */
+    private static class TestListener implements EventListener {
+        private static long count;
+
+        @com.marcusslover.plus.lib.events.annotations.Event(inject = false)
+        private void onBase(BaseEvent event) {
+            count++;
+        }
+
+        @com.marcusslover.plus.lib.events.annotations.Event(inject = false)
+        private void onChild(ChildEvent event) {
+            count++;
+        }
+
+        @com.marcusslover.plus.lib.events.annotations.Event(inject = false)
+        private void onCancellable(CancellableEvent event) {
+            count++;
+        }
+    }
+}
@@ -1,13 +1,33 @@
 package com.marcusslover.plus.lib.container;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.marcusslover.plus.lib.container.codec.IContainerCodec;
+import com.marcusslover.plus.lib.container.extra.Compressed;
+import com.marcusslover.plus.lib.container.extra.WriteBehind;
 import com.marcusslover.plus.lib.container.type.MapContainer;
 import com.marcusslover.plus.lib.container.type.SingleContainer;
+import com.marcusslover.plus.lib.json.JsonUtil;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
 
 /**
  * Abstract container that represents a parent of files, similar to a folder.
@@ -17,17 +37,219 @@ import java.io.File;
  */
 @Data
 public abstract class AbstractContainer<K> {
-    protected static final Gson DEFAULT_GSON = new GsonBuilder().setPrettyPrinting().serializeNulls().create();
+    /**
+     * Default Gson of the containers, with the shared adapters registered when this class was loaded.
+     *
+     * @deprecated Misses the adapters registered afterwards, use {@link #getDefaultGson()}.
+     */
+    @Deprecated
+    protected static final Gson DEFAULT_GSON = createDefaultGson();
+    /*Default Gson resolved by getDefaultGson, rebuilt once another shared adapter is registered*/
+    private static volatile @NotNull VersionedGson defaultGson = new VersionedGson(DEFAULT_GSON, JsonUtil.getAdapterVersion());
+    /*Idle time after which the I/O thread of a container stops*/
+    private static final long EXECUTOR_KEEP_ALIVE = 60L;
+    /*Reads of the async functions, kept apart from the writes so that loads never wait for them*/
+    private static final ThreadPoolExecutor READ_EXECUTOR = createReadExecutor();
     protected File parentFolder;
+    /*Plugin that initialized the container*/
+    protected @Nullable Plugin plugin;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private final @Nullable WriteBehind writeBehind = this.getClass().getAnnotation(WriteBehind.class);
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private volatile @Nullable IContainerCodec codec;
+    /*Version of the shared adapters the codec was created with*/
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private volatile int codecVersion;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private volatile @Nullable ScheduledExecutorService executor;
+    /*Counters and latencies of the I/O operations*/
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private final @NotNull ContainerMetrics metrics = new ContainerMetrics(this);
 
     /**
      * Gets the Gson instance.
-     * By default, it is {@link #DEFAULT_GSON}.
+     * By default, it is {@link #getDefaultGson()}, which includes the shared adapters of {@link JsonUtil}.
+     * <p>
+     * {@link com.marcusslover.plus.lib.world.WorldPoint} is written as an object, like it always was.
+     * To opt in to its compact array format, override this function and return e.g.
+     * {@code JsonUtil.newBuilder().registerTypeAdapter(WorldPoint.class, WorldPoint.ADAPTER).setPrettyPrinting().create()}.
+     * Points stored as objects are still read, but the new files can't be read by older versions.
+     * </p>
      *
      * @return Gson instance.
      */
     protected @NotNull Gson getGson() {
-        return DEFAULT_GSON;
+        return getDefaultGson();
+    }
+
+    /**
+     * Gets the default Gson of the containers.
+     * <p>
+     * It writes pretty-printed json, including nulls, with all the shared adapters of {@link JsonUtil}.
+     * The instance is rebuilt once another shared adapter is registered.
+     * </p>
+     *
+     * @return Gson instance.
+     */
+    protected static @NotNull Gson getDefaultGson() {
+        VersionedGson gson = defaultGson;
+        int version = JsonUtil.getAdapterVersion();
+        if (gson.version() != version) {
+            gson = new VersionedGson(createDefaultGson(), version);
+            defaultGson = gson;
+        }
+        return gson.gson();
+    }
+
+    private static @NotNull Gson createDefaultGson() {
+        return JsonUtil.newBuilder().setPrettyPrinting().serializeNulls().create();
+    }
+
+    /**
+     * Gets the codec that converts the objects to files and back.
+     * By default, it stores pretty-printed json using {@link #getGson()},
+     * compressed if the container is annotated with {@link Compressed}.
+     * <p>
+     * Override this function to store the objects in a different format,
+     * e.g. {@link IContainerCodec#binary(Gson)}. Files written in another format
+     * can be converted with the {@code migrate} function of the container.
+     * </p>
+     *
+     * @return Codec instance.
+     */
+    protected @NotNull IContainerCodec getCodec() {
+        IContainerCodec codec = this.codec;
+        int version = JsonUtil.getAdapterVersion();
+        /*The codec holds the adapters it resolved, it is rebuilt once another shared adapter is registered*/
+        if (codec == null || this.codecVersion != version) {
+            codec = IContainerCodec.json(this.getGson());
+            Compressed compressed = this.getClass().getAnnotation(Compressed.class);
+            if (compressed != null) {
+                codec = IContainerCodec.compressed(codec, compressed.value());
+            }
+            this.codec = codec;
+            this.codecVersion = version;
+        }
+        return codec;
+    }
+
+    /**
+     * Gets the executor that performs the I/O operations of this container.
+     * <p>
+     * By default, every container has its own thread, created when it is first needed
+     * and stopped after being idle for a minute. So the writes of one container never
+     * queue up behind the writes of another container.
+     * </p>
+     * <p>
+     * The executor is never shut down, the container can still be used after a flush.
+     * Its thread is a daemon thread, so it never keeps the server from stopping,
+     * and it stops on its own once idle. Flush the container when the plugin is disabled,
+     * e.g. with {@link ContainerManager#flushAll()}, so that nothing is left pending on it.
+     * </p>
+     *
+     * @return Executor instance.
+     */
+    protected @NotNull ScheduledExecutorService getExecutor() {
+        ScheduledExecutorService executor = this.executor;
+        if (executor != null) {
+            return executor;
+        }
+        synchronized (this) {
+            if (this.executor == null) {
+                String name = "Plus Container I/O (" + (this.parentFolder == null ? this.getClass().getSimpleName() : this.parentFolder.getName()) + ")";
+                ScheduledThreadPoolExecutor created = new ScheduledThreadPoolExecutor(1, runnable -> {
+                    Thread thread = new Thread(runnable, name);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                created.setKeepAliveTime(EXECUTOR_KEEP_ALIVE, TimeUnit.SECONDS);
+                created.allowCoreThreadTimeOut(true);
+                this.executor = created;
+            }
+            return this.executor;
+        }
+    }
+
+    /**
+     * Gets the write-behind settings of this container.
+     * Look at {@link WriteBehind} for more information.
+     *
+     * @return The settings or null if the container writes synchronously.
+     */
+    protected @Nullable WriteBehind getWriteBehind() {
+        return this.writeBehind;
+    }
+
+    /**
+     * Checks if this container persists its data in write-behind mode.
+     *
+     * @return True if the writes are deferred, false otherwise.
+     */
+    public boolean isWriteBehind() {
+        return this.getWriteBehind() != null;
+    }
+
+    /**
+     * Gets the amount of objects loaded in the cache.
+     * <p>
+     * Reported by {@link ContainerMetrics}, containers with a cache override this function.
+     * </p>
+     *
+     * @return The amount of loaded objects.
+     */
+    protected int getCachedCount() {
+        return 0;
+    }
+
+    /**
+     * Gets the executor that reads the objects of the async load functions.
+     * <p>
+     * By default, it is a small pool shared by all containers, separate from {@link #getExecutor()},
+     * so loads run concurrently and never queue up behind the pending writes.
+     * </p>
+     *
+     * @return Executor instance.
+     */
+    protected @NotNull Executor getReadExecutor() {
+        return READ_EXECUTOR;
+    }
+
+    private static @NotNull ThreadPoolExecutor createReadExecutor() {
+        int threads = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, EXECUTOR_KEEP_ALIVE, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "Plus Container Reader #" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Gets the executor that runs tasks on the main server thread.
+     * <p>
+     * Use it to complete the callbacks of the async functions on the main thread, e.g.
+     * {@code updateAsync(key).thenRunAsync(() -> ..., container.getMainThreadExecutor())}.
+     * </p>
+     *
+     * @return Executor instance.
+     */
+    public @NotNull Executor getMainThreadExecutor() {
+        Plugin plugin = this.plugin;
+        if (plugin == null) {
+            throw new IllegalStateException("Container is not initialized, register it in the ContainerManager first.");
+        }
+        return Bukkit.getScheduler().getMainThreadExecutor(plugin);
     }
 
     /**
@@ -42,5 +264,71 @@ public abstract class AbstractContainer<K> {
      * Look at {@link com.marcusslover.plus.lib.container.extra.InitialLoading} for more information.
      */
     public abstract void loadAllData();
-}
 
+    /**
+     * Attempts to load all the data from the container using the given pool.
+     * <p>
+     * Containers that can read their data concurrently override this function,
+     * by default it falls back to {@link #loadAllData()}.
+     * </p>
+     *
+     * @param pool Pool used to read the data.
+     */
+    public void loadAllData(@NotNull ForkJoinPool pool) {
+        this.loadAllData();
+    }
+
+    /**
+     * Reads all the data of the container on the given pool, without loading it yet.
+     * <p>
+     * The future completes with a task that puts the read data in the cache and returns
+     * the amount of loaded objects, or -1 if the amount is not known.
+     * Run the task on the thread that owns the cache, usually the main thread.
+     * This way the data of multiple containers can be read at the same time.
+     * By default, nothing is read ahead and the task calls {@link #loadAllData()}.
+     * </p>
+     *
+     * @param pool Pool used to read the data.
+     * @return Future of the task loading the data.
+     */
+    public @NotNull CompletableFuture<IntSupplier> readAllData(@NotNull ForkJoinPool pool) {
+        return this.readAllData(pool, new LoadProgress());
+    }
+
+    /**
+     * Reads all the data of the container on the given pool, without loading it yet,
+     * and reports every object read to the given progress.
+     * <p>
+     * Look at {@link #readAllData(ForkJoinPool)} for more information.
+     * By default, nothing is read ahead, so nothing is reported either.
+     * </p>
+     *
+     * @param pool     Pool used to read the data.
+     * @param progress Progress of the read.
+     * @return Future of the task loading the data.
+     */
+    public @NotNull CompletableFuture<IntSupplier> readAllData(@NotNull ForkJoinPool pool, @NotNull LoadProgress progress) {
+        return CompletableFuture.completedFuture(() -> {
+            this.loadAllData();
+            return -1;
+        });
+    }
+
+    /**
+     * Writes all the pending data of the container to the files.
+     * <p>
+     * This function blocks until every pending write is done.
+     * It does nothing if the container is not in write-behind mode.
+     * </p>
+     */
+    public abstract void flush();
+
+    /**
+     * Gson instance and the version of the shared adapters it was created with.
+     *
+     * @param gson    The Gson instance.
+     * @param version Version of the shared adapters.
+     */
+    private record VersionedGson(@NotNull Gson gson, int version) {
+    }
+}
@@ -0,0 +1,171 @@
+package com.marcusslover.plus.lib.container;
+
+import com.marcusslover.plus.lib.container.type.MapContainer;
+import com.marcusslover.plus.lib.container.type.SingleContainer;
+import com.marcusslover.plus.lib.task.Task;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.function.Supplier;
+
+/**
+ * Periodically saves the loaded objects of all containers.
+ * <p>
+ * Every autosave cycle collects the objects that might need to be written
+ * (only the dirty ones for containers with dirty tracking) and spreads
+ * their saves across the following ticks. Each tick only saves objects
+ * until the time budget is used up, the rest is left for the next tick,
+ * so a cycle never produces a lag spike.
+ * </p>
+ * <p>
+ * Saves run on the main thread through the normal {@code update} path of the container,
+ * containers in write-behind mode only queue the objects there.
+ * </p>
+ */
+public class AutosaveScheduler {
+    private final @NotNull Supplier<Collection<AbstractContainer<?>>> containers;
+    private final long interval;
+    private final long budget;
+    /*Saves left in the current cycle*/
+    private final @NotNull Deque<Runnable> queue = new ArrayDeque<>();
+    private long ticksUntilCycle;
+    private long savedCount;
+    private @Nullable Task task;
+
+    /**
+     * Creates a new autosave scheduler.
+     *
+     * @param containers Supplier of the containers to save.
+     * @param interval   Amount of ticks between the starts of two cycles.
+     * @param budget     Maximum time spent saving per tick, at least one object is saved per tick.
+     */
+    public AutosaveScheduler(@NotNull Supplier<Collection<AbstractContainer<?>>> containers, long interval, @NotNull Duration budget) {
+        this.containers = containers;
+        this.interval = Math.max(1L, interval);
+        this.budget = budget.toNanos();
+        this.ticksUntilCycle = this.interval;
+    }
+
+    /**
+     * Starts the scheduler.
+     *
+     * @param plugin Plugin owning the task.
+     */
+    public void start(@NotNull Plugin plugin) {
+        if (this.task != null) {
+            return;
+        }
+        this.task = Task.syncRepeating(plugin, this::tick, 1L, 1L);
+    }
+
+    /**
+     * Stops the scheduler.
+     * <p>
+     * Saves left in the current cycle are dropped,
+     * flush the containers afterwards to write everything.
+     * </p>
+     */
+    public void stop() {
+        if (this.task != null) {
+            this.task.cancel();
+            this.task = null;
+        }
+        this.queue.clear();
+        this.ticksUntilCycle = this.interval;
+    }
+
+    /**
+     * Checks if the scheduler is running.
+     *
+     * @return True if running.
+     */
+    public boolean isRunning() {
+        return this.task != null;
+    }
+
+    /**
+     * Gets the amount of saves left in the current cycle.
+     *
+     * @return The amount of saves.
+     */
+    public int getPendingCount() {
+        return this.queue.size();
+    }
+
+    /**
+     * Gets the amount of objects saved since the scheduler was created.
+     *
+     * @return The amount of saved objects.
+     */
+    public long getSavedCount() {
+        return this.savedCount;
+    }
+
+    /**
+     * Runs a single tick of the scheduler.
+     * <p>
+     * Called every tick on the main thread once the scheduler is started.
+     * </p>
+     */
+    public void tick() {
+        if (this.ticksUntilCycle > 0) {
+            this.ticksUntilCycle--;
+        }
+        if (this.queue.isEmpty()) {
+            if (this.ticksUntilCycle > 0) {
+                return;
+            }
+            this.collect();
+            this.ticksUntilCycle = this.interval;
+        }
+        long start = System.nanoTime();
+        do {
+            Runnable save = this.queue.poll();
+            if (save == null) {
+                break;
+            }
+            try {
+                save.run();
+                this.savedCount++;
+            } catch (RuntimeException e) {
+                Bukkit.getLogger().warning("Failed to autosave container data: " + e.getMessage());
+                e.printStackTrace();
+            }
+        } while (System.nanoTime() - start < this.budget);
+    }
+
+    private void collect() {
+        for (AbstractContainer<?> container : this.containers.get()) {
+            if (container instanceof MapContainer<?, ?> mapContainer) {
+                this.collect(mapContainer);
+            } else if (container instanceof SingleContainer<?> singleContainer) {
+                this.collect(singleContainer);
+            }
+        }
+    }
+
+    private <K> void collect(@NotNull MapContainer<K, ?> container) {
+        for (K key : container.getSaveCandidates()) {
+            /*Does nothing if the object was unloaded in the meantime*/
+            this.queue.add(() -> container.update(key));
+        }
+    }
+
+    private <V> void collect(@NotNull SingleContainer<V> container) {
+        if (container.retrieveLocally() == null) {
+            return;
+        }
+        this.queue.add(() -> {
+            V value = container.retrieveLocally();
+            if (value != null) {
+                container.update(value);
+            }
+        });
+    }
+}
@@ -2,32 +2,76 @@ package com.marcusslover.plus.lib.container;
 
 import com.marcusslover.plus.lib.container.extra.InitialLoading;
 import com.marcusslover.plus.lib.container.type.MapContainer;
-import com.marcusslover.plus.lib.container.type.SingleContainer;
 import lombok.Getter;
+import lombok.Setter;
 import org.bukkit.plugin.Plugin;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
-import java.util.HashMap;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.IntSupplier;
 
 /**
  * Manages all containers of the server.
  */
 public class ContainerManager {
+    /*Interval of the progress reports while the containers with initial loading are read*/
+    public static final Duration PROGRESS_INTERVAL = Duration.ofSeconds(5L);
+
+    private final @NotNull Map<String, AbstractContainer<?>> containerMap = new ConcurrentHashMap<>();
+    /*Resolved lookups of getByType, cleared whenever a container is registered*/
+    private final @NotNull Map<Class<?>, Optional<AbstractContainer<?>>> typeIndex = new ConcurrentHashMap<>();
+    /*Amount of threads reading the files of containers with initial loading*/
+    @Getter
+    @Setter
+    private int loadingParallelism = Runtime.getRuntime().availableProcessors();
+    /*Running autosave scheduler, null if autosave is disabled*/
+    @Getter
+    private @Nullable AutosaveScheduler autosaveScheduler;
+    /*Duration of a container operation that is logged as slow*/
     @Getter
-    private final @NotNull Map<String, AbstractContainer<?>> containerMap = new HashMap<>();
+    private @NotNull Duration slowOperationThreshold = ContainerMetrics.DEFAULT_SLOW_THRESHOLD;
+
+    /**
+     * Gets the registered containers by their parent folder name.
+     * <p>
+     * The map is a read-only view, use {@link #register(String, AbstractContainer)} to add containers.
+     * </p>
+     *
+     * @return Unmodifiable view of the containers.
+     */
+    public @NotNull Map<String, AbstractContainer<?>> getContainerMap() {
+        return Collections.unmodifiableMap(this.containerMap);
+    }
 
     /**
      * Registers a new container.
+     * <p>
+     * This function is thread-safe.
+     * </p>
      *
      * @param parent    Parent folder name.
      * @param container Instance of the container.
      */
     public void register(@NotNull String parent, @NotNull AbstractContainer<?> container) {
-        this.containerMap.put(parent, container);
+        container.getMetrics().setSlowThreshold(this.slowOperationThreshold);
+        synchronized (this.typeIndex) {
+            this.containerMap.put(parent, container);
+            this.typeIndex.clear();
+        }
     }
 
 
@@ -52,6 +96,7 @@ public class ContainerManager {
         }
 
         /*Creates directories for all containers*/
+        List<String> initialLoads = new ArrayList<>();
         for (String parent : this.containerMap.keySet()) {
             File containerFolder = new File(dataFolder, parent);
 
@@ -64,6 +109,15 @@ public class ContainerManager {
 
             AbstractContainer<?> container = this.containerMap.get(parent);
             container.setParentFolder(containerFolder);
+            container.setPlugin(plugin);
+
+            /*Recovers the writes lost by a crash before anything is loaded*/
+            if (container instanceof MapContainer<?, ?> mapContainer && mapContainer.isJournaled()) {
+                int replayed = mapContainer.replayJournal();
+                if (replayed > 0) {
+                    plugin.getLogger().info("Replayed %d journal entries of container '%s'.".formatted(replayed, parent));
+                }
+            }
 
             /*Extra data settings*/
             InitialLoading initialLoading = this.getInitialLoadingAnnotation(container);
@@ -73,11 +127,150 @@ public class ContainerManager {
             if (!initialLoading.value()) {
                 continue;
             }
-            if (container instanceof MapContainer<?, ?> mapContainer) {
-                mapContainer.loadAllData();
-            } else if (container instanceof SingleContainer<?> singleContainer) {
-                singleContainer.loadAllData();
+            initialLoads.add(parent);
+        }
+
+        if (initialLoads.isEmpty()) {
+            return;
+        }
+        /*Reads the files of all containers with initial loading at once, the objects are put in the caches on this thread*/
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, this.loadingParallelism));
+        try {
+            Map<String, InitialLoad> loads = new LinkedHashMap<>();
+            for (String parent : initialLoads) {
+                LoadProgress progress = new LoadProgress();
+                CompletableFuture<IntSupplier> read = this.containerMap.get(parent).readAllData(pool, progress);
+                /*Stamped when this container is read, not when the ones before it are loaded*/
+                read.whenComplete((supplier, throwable) -> progress.finish());
+                loads.put(parent, new InitialLoad(read, progress));
+            }
+            for (Map.Entry<String, InitialLoad> entry : loads.entrySet()) {
+                String parent = entry.getKey();
+                IntSupplier supplier = this.awaitRead(plugin, parent, entry.getValue().read(), loads);
+                long start = System.nanoTime();
+                int loaded = supplier.getAsInt();
+                long cached = (System.nanoTime() - start) / 1_000_000L;
+                long read = entry.getValue().progress().getElapsed().toMillis();
+                if (loaded < 0) {
+                    plugin.getLogger().info("Loaded container '%s' in %dms.".formatted(parent, cached));
+                } else {
+                    plugin.getLogger().info("Loaded %d entries into container '%s' in %dms (read %dms, cached %dms).".formatted(loaded, parent, read + cached, read, cached));
+                }
             }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Waits until the data of the container is read, logging the progress of all the reads meanwhile.
+     *
+     * @param plugin Plugin instance.
+     * @param parent Parent folder name of the container.
+     * @param read   Future of the read.
+     * @param loads  All the running reads.
+     * @return The task loading the data.
+     */
+    private @NotNull IntSupplier awaitRead(@NotNull Plugin plugin, @NotNull String parent, @NotNull CompletableFuture<IntSupplier> read,
+                                           @NotNull Map<String, InitialLoad> loads) {
+        while (true) {
+            try {
+                return read.get(PROGRESS_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                loads.forEach((name, load) -> {
+                    if (!load.progress().isDone()) {
+                        plugin.getLogger().info("Loading container '%s': %s.".formatted(name, load.progress()));
+                    }
+                });
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Could not load container '%s'.".formatted(parent), e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while loading container '%s'.".formatted(parent), e);
+            }
+        }
+    }
+
+    /**
+     * Writes all the pending data of every container to the files.
+     * <p>
+     * This function blocks until every pending write is done,
+     * call it when the plugin is disabling to avoid losing any data.
+     * </p>
+     */
+    public void flushAll() {
+        for (AbstractContainer<?> container : this.containerMap.values()) {
+            container.flush();
+        }
+    }
+
+    /**
+     * Starts saving the loaded objects of all containers periodically.
+     * <p>
+     * Look at {@link AutosaveScheduler} for more information.
+     * Any previously started autosave is stopped first.
+     * </p>
+     *
+     * @param plugin   Plugin owning the task.
+     * @param interval Amount of ticks between the starts of two autosave cycles.
+     * @param budget   Maximum time spent saving per tick.
+     */
+    public void startAutosave(@NotNull Plugin plugin, long interval, @NotNull Duration budget) {
+        this.stopAutosave();
+        AutosaveScheduler scheduler = new AutosaveScheduler(this.containerMap::values, interval, budget);
+        scheduler.start(plugin);
+        this.autosaveScheduler = scheduler;
+    }
+
+    /**
+     * Stops the autosave, if it is running.
+     * <p>
+     * Call {@link #flushAll()} afterwards to write everything that is still pending.
+     * </p>
+     */
+    public void stopAutosave() {
+        if (this.autosaveScheduler != null) {
+            this.autosaveScheduler.stop();
+            this.autosaveScheduler = null;
+        }
+    }
+
+    /**
+     * Takes a snapshot of the metrics of every container.
+     * <p>
+     * Look at {@link ContainerMetrics} for more information.
+     * </p>
+     *
+     * @return Snapshots of the metrics by the parent folder names.
+     */
+    public @NotNull Map<String, ContainerMetrics.Snapshot> getMetrics() {
+        Map<String, ContainerMetrics.Snapshot> metrics = new LinkedHashMap<>();
+        this.containerMap.forEach((parent, container) -> metrics.put(parent, container.getMetrics().snapshot()));
+        return metrics;
+    }
+
+    /**
+     * Gets the metrics of a container.
+     *
+     * @param parent Parent folder name of the container.
+     * @return Optional of the metrics.
+     */
+    public @NotNull Optional<ContainerMetrics> getMetrics(@NotNull String parent) {
+        return Optional.ofNullable(this.containerMap.get(parent)).map(AbstractContainer::getMetrics);
+    }
+
+    /**
+     * Sets the duration of a container operation that is logged as slow.
+     * <p>
+     * Applies to all the registered containers and to the containers registered later.
+     * </p>
+     *
+     * @param slowOperationThreshold The threshold, zero to disable the logging.
+     */
+    public void setSlowOperationThreshold(@NotNull Duration slowOperationThreshold) {
+        this.slowOperationThreshold = slowOperationThreshold;
+        for (AbstractContainer<?> container : this.containerMap.values()) {
+            container.getMetrics().setSlowThreshold(slowOperationThreshold);
         }
     }
 
@@ -92,13 +285,46 @@ public class ContainerManager {
 
     /**
      * Finds a container by its type.
+     * <p>
+     * A container of exactly the given type is preferred, otherwise any container
+     * extending or implementing the type is returned. The result of every type is resolved once
+     * and cached until another container is registered, so this function is cheap
+     * enough to be called from event handlers.
+     * </p>
      *
-     * @param type Type of the container.
+     * @param type Type of the container, its superclass or an interface it implements.
      * @return Optional of the container.
      */
-    public <T extends AbstractContainer<?>> @NotNull Optional<T> getByType(@NotNull Class<T> type) {
-        //noinspection unchecked
-        return this.containerMap.values().stream().filter(x -> x.getClass().equals(type)).findFirst().map(x -> (T) x);
+    public <T> @NotNull Optional<T> getByType(@NotNull Class<T> type) {
+        Optional<AbstractContainer<?>> found = this.typeIndex.get(type);
+        if (found == null) {
+            /*Resolved under the lock, so that a concurrent registration never leaves a stale entry*/
+            synchronized (this.typeIndex) {
+                found = this.typeIndex.computeIfAbsent(type, this::resolve);
+            }
+        }
+        return found.map(type::cast);
     }
-}
 
+    private @NotNull Optional<AbstractContainer<?>> resolve(@NotNull Class<?> type) {
+        AbstractContainer<?> assignable = null;
+        for (AbstractContainer<?> container : this.containerMap.values()) {
+            if (container.getClass() == type) {
+                return Optional.of(container);
+            }
+            if (assignable == null && type.isInstance(container)) {
+                assignable = container;
+            }
+        }
+        return Optional.ofNullable(assignable);
+    }
+
+    /**
+     * Running read of a container with initial loading.
+     *
+     * @param read     Future of the read.
+     * @param progress Progress of the read.
+     */
+    private record InitialLoad(@NotNull CompletableFuture<IntSupplier> read, @NotNull LoadProgress progress) {
+    }
+}
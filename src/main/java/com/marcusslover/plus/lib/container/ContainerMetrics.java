@@ -0,0 +1,317 @@
+package com.marcusslover.plus.lib.container;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Counters and latency histograms of a single container.
+ * <p>
+ * Containers record every object they read from or write to their storage,
+ * the loads served from the cache and the objects evicted from the cache.
+ * Reads and writes taking longer than {@link #getSlowThreshold()} are logged.
+ * Recording is lock-free, so the metrics are always enabled.
+ * </p>
+ * <p>
+ * Use {@link #snapshot()} or {@link ContainerManager#getMetrics()} to query them.
+ * </p>
+ */
+public class ContainerMetrics {
+    /*Default duration of an operation that is logged as slow, a whole tick*/
+    public static final Duration DEFAULT_SLOW_THRESHOLD = Duration.ofMillis(50L);
+
+    private final @NotNull AbstractContainer<?> container;
+    private final @NotNull Histogram readLatency = new Histogram();
+    private final @NotNull Histogram writeLatency = new Histogram();
+    private final @NotNull LongAdder bytesRead = new LongAdder();
+    private final @NotNull LongAdder bytesWritten = new LongAdder();
+    private final @NotNull LongAdder cacheHits = new LongAdder();
+    private final @NotNull LongAdder cacheMisses = new LongAdder();
+    private final @NotNull LongAdder evictions = new LongAdder();
+    private final @NotNull LongAdder slowOperations = new LongAdder();
+    /*Zero disables the logging*/
+    private volatile long slowThreshold = DEFAULT_SLOW_THRESHOLD.toNanos();
+
+    ContainerMetrics(@NotNull AbstractContainer<?> container) {
+        this.container = container;
+    }
+
+    /**
+     * Records an object read from the storage.
+     *
+     * @param name  Name of the entry.
+     * @param nanos Duration of the read in nanoseconds.
+     * @param bytes Amount of bytes read.
+     */
+    public void recordRead(@NotNull String name, long nanos, long bytes) {
+        this.readLatency.record(nanos);
+        this.bytesRead.add(bytes);
+        this.checkSlow("read", name, nanos);
+    }
+
+    /**
+     * Records an object written to or deleted from the storage.
+     *
+     * @param name  Name of the entry.
+     * @param nanos Duration of the write in nanoseconds.
+     * @param bytes Amount of bytes written, zero for deletions.
+     */
+    public void recordWrite(@NotNull String name, long nanos, long bytes) {
+        this.writeLatency.record(nanos);
+        this.bytesWritten.add(bytes);
+        this.checkSlow("write", name, nanos);
+    }
+
+    /**
+     * Records a load served from the cache.
+     */
+    public void recordCacheHit() {
+        this.cacheHits.increment();
+    }
+
+    /**
+     * Records a load that had to read the storage.
+     */
+    public void recordCacheMiss() {
+        this.cacheMisses.increment();
+    }
+
+    /**
+     * Records an object evicted from the cache.
+     */
+    public void recordEviction() {
+        this.evictions.increment();
+    }
+
+    /**
+     * Gets the duration of an operation that is logged as slow.
+     *
+     * @return The threshold, zero if slow operations are not logged.
+     */
+    public @NotNull Duration getSlowThreshold() {
+        return Duration.ofNanos(this.slowThreshold);
+    }
+
+    /**
+     * Sets the duration of an operation that is logged as slow.
+     *
+     * @param slowThreshold The threshold, zero to disable the logging.
+     */
+    public void setSlowThreshold(@NotNull Duration slowThreshold) {
+        this.slowThreshold = Math.max(0L, slowThreshold.toNanos());
+    }
+
+    /**
+     * Takes a snapshot of all the metrics.
+     *
+     * @return The snapshot.
+     */
+    public @NotNull Snapshot snapshot() {
+        return new Snapshot(this.getContainerName(), this.container.getCachedCount(),
+                this.readLatency.snapshot(), this.writeLatency.snapshot(),
+                this.bytesRead.sum(), this.bytesWritten.sum(),
+                this.cacheHits.sum(), this.cacheMisses.sum(),
+                this.evictions.sum(), this.slowOperations.sum());
+    }
+
+    /**
+     * Resets all the counters and histograms.
+     */
+    public void reset() {
+        this.readLatency.reset();
+        this.writeLatency.reset();
+        this.bytesRead.reset();
+        this.bytesWritten.reset();
+        this.cacheHits.reset();
+        this.cacheMisses.reset();
+        this.evictions.reset();
+        this.slowOperations.reset();
+    }
+
+    private void checkSlow(@NotNull String operation, @NotNull String name, long nanos) {
+        long threshold = this.slowThreshold;
+        if (threshold == 0L || nanos < threshold) {
+            return;
+        }
+        this.slowOperations.increment();
+        Plugin plugin = this.container.getPlugin();
+        Logger logger = plugin == null ? Bukkit.getLogger() : plugin.getLogger();
+        logger.warning("Slow %s of '%s' in container '%s' took %.1fms.".formatted(operation, name, this.getContainerName(), nanos / 1_000_000D));
+    }
+
+    private @NotNull String getContainerName() {
+        File parentFolder = this.container.getParentFolder();
+        return parentFolder == null ? this.container.getClass().getSimpleName() : parentFolder.getName();
+    }
+
+    /**
+     * Snapshot of the metrics of a container.
+     *
+     * @param container      Name of the container.
+     * @param cacheSize      Amount of objects loaded in the cache.
+     * @param readLatency    Latencies of the reads.
+     * @param writeLatency   Latencies of the writes, including deletions.
+     * @param bytesRead      Amount of bytes read.
+     * @param bytesWritten   Amount of bytes written.
+     * @param cacheHits      Amount of loads served from the cache.
+     * @param cacheMisses    Amount of loads that had to read the storage.
+     * @param evictions      Amount of objects evicted from the cache.
+     * @param slowOperations Amount of reads and writes slower than the threshold.
+     */
+    public record Snapshot(@NotNull String container, int cacheSize,
+                           @NotNull Histogram.Snapshot readLatency, @NotNull Histogram.Snapshot writeLatency,
+                           long bytesRead, long bytesWritten, long cacheHits, long cacheMisses,
+                           long evictions, long slowOperations) {
+
+        /**
+         * Gets the amount of objects read.
+         *
+         * @return The amount of reads.
+         */
+        public long reads() {
+            return this.readLatency.count();
+        }
+
+        /**
+         * Gets the amount of objects written or deleted.
+         *
+         * @return The amount of writes.
+         */
+        public long writes() {
+            return this.writeLatency.count();
+        }
+
+        /**
+         * Gets the ratio of the loads served from the cache.
+         *
+         * @return The ratio between 0 and 1, 0 if nothing was loaded.
+         */
+        public double hitRatio() {
+            long loads = this.cacheHits + this.cacheMisses;
+            return loads == 0L ? 0D : (double) this.cacheHits / loads;
+        }
+
+        @Override
+        public @NotNull String toString() {
+            return "%s: cached=%d, reads=%d (%s), writes=%d (%s), read=%dB, written=%dB, hits=%.1f%%, evictions=%d, slow=%d".formatted(
+                    this.container, this.cacheSize, this.reads(), this.readLatency, this.writes(), this.writeLatency,
+                    this.bytesRead, this.bytesWritten, this.hitRatio() * 100D, this.evictions, this.slowOperations);
+        }
+    }
+
+    /**
+     * Lock-free histogram of latencies.
+     * <p>
+     * Latencies are counted in buckets of powers of two nanoseconds,
+     * so percentiles are accurate within a factor of two.
+     * </p>
+     */
+    public static class Histogram {
+        /*Bucket i counts the latencies below 2^i nanoseconds, but not below 2^(i-1)*/
+        private static final int BUCKETS = Long.SIZE + 1;
+
+        private final @NotNull AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final @NotNull LongAdder count = new LongAdder();
+        private final @NotNull LongAdder total = new LongAdder();
+        private final @NotNull AtomicLong max = new AtomicLong();
+
+        /**
+         * Records a latency.
+         *
+         * @param nanos The latency in nanoseconds.
+         */
+        public void record(long nanos) {
+            long value = Math.max(0L, nanos);
+            this.buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(value));
+            this.count.increment();
+            this.total.add(value);
+            if (value > this.max.get()) {
+                this.max.accumulateAndGet(value, Math::max);
+            }
+        }
+
+        /**
+         * Takes a snapshot of the histogram.
+         *
+         * @return The snapshot.
+         */
+        public @NotNull Snapshot snapshot() {
+            long[] counts = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = this.buckets.get(i);
+            }
+            return new Snapshot(this.count.sum(), this.total.sum(), this.max.get(), counts);
+        }
+
+        /**
+         * Resets the histogram.
+         */
+        public void reset() {
+            for (int i = 0; i < BUCKETS; i++) {
+                this.buckets.set(i, 0L);
+            }
+            this.count.reset();
+            this.total.reset();
+            this.max.set(0L);
+        }
+
+        /**
+         * Snapshot of a histogram.
+         *
+         * @param count      Amount of recorded latencies.
+         * @param totalNanos Sum of the recorded latencies in nanoseconds.
+         * @param maxNanos   Highest recorded latency in nanoseconds.
+         * @param buckets    Counts of the buckets.
+         */
+        public record Snapshot(long count, long totalNanos, long maxNanos, long @NotNull [] buckets) {
+
+            /**
+             * Gets the mean latency.
+             *
+             * @return The mean in nanoseconds, 0 if nothing was recorded.
+             */
+            public long meanNanos() {
+                return this.count == 0L ? 0L : this.totalNanos / this.count;
+            }
+
+            /**
+             * Estimates the latency at the given percentile.
+             *
+             * @param percentile Percentile between 0 and 100.
+             * @return Upper bound of the bucket containing the percentile in nanoseconds, 0 if nothing was recorded.
+             */
+            public long percentileNanos(double percentile) {
+                long total = 0L;
+                for (long bucket : this.buckets) {
+                    total += bucket;
+                }
+                if (total == 0L) {
+                    return 0L;
+                }
+                long rank = (long) Math.ceil(Math.min(100D, Math.max(0D, percentile)) / 100D * total);
+                long seen = 0L;
+                for (int i = 0; i < this.buckets.length; i++) {
+                    seen += this.buckets[i];
+                    if (seen >= Math.max(1L, rank)) {
+                        long upper = i == 0 ? 0L : i >= Long.SIZE - 1 ? Long.MAX_VALUE : (1L << i) - 1L;
+                        return Math.min(upper, this.maxNanos);
+                    }
+                }
+                return this.maxNanos;
+            }
+
+            @Override
+            public @NotNull String toString() {
+                return "mean=%.2fms, p99=%.2fms, max=%.2fms".formatted(
+                        this.meanNanos() / 1_000_000D, this.percentileNanos(99D) / 1_000_000D, this.maxNanos / 1_000_000D);
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.marcusslover.plus.lib.container;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Progress of reading the data of a single container, see {@link AbstractContainer#readAllData}.
+ * <p>
+ * The container sets the amount of objects it is going to read and counts every object once it is read.
+ * Counting is thread-safe, the objects are usually read concurrently.
+ * </p>
+ */
+public class LoadProgress {
+    private final long start = System.nanoTime();
+    private final @NotNull AtomicInteger read = new AtomicInteger();
+    /*Amount of objects to read, -1 if not known*/
+    private volatile int total = -1;
+    /*Zero while still reading*/
+    private volatile long end;
+
+    /**
+     * Sets the amount of objects that are going to be read.
+     *
+     * @param total The amount of objects.
+     */
+    public void setTotal(int total) {
+        this.total = total;
+    }
+
+    /**
+     * Gets the amount of objects that are going to be read.
+     *
+     * @return The amount of objects or -1 if it is not known.
+     */
+    public int getTotal() {
+        return this.total;
+    }
+
+    /**
+     * Counts an object that was read.
+     */
+    public void increment() {
+        this.read.incrementAndGet();
+    }
+
+    /**
+     * Gets the amount of objects read so far.
+     *
+     * @return The amount of objects.
+     */
+    public int getRead() {
+        return this.read.get();
+    }
+
+    /**
+     * Gets the time spent reading.
+     *
+     * @return Time since the progress was created, until the data was read.
+     */
+    public @NotNull Duration getElapsed() {
+        long end = this.end;
+        return Duration.ofNanos((end == 0L ? System.nanoTime() : end) - this.start);
+    }
+
+    /**
+     * Checks if all the data was read.
+     *
+     * @return True if done.
+     */
+    public boolean isDone() {
+        return this.end != 0L;
+    }
+
+    void finish() {
+        if (this.end == 0L) {
+            this.end = System.nanoTime();
+        }
+    }
+
+    @Override
+    public @NotNull String toString() {
+        int total = this.total;
+        String read = total < 0 ? String.valueOf(this.getRead()) : "%d/%d".formatted(this.getRead(), total);
+        return "%s objects read in %dms".formatted(read, this.getElapsed().toMillis());
+    }
+}
@@ -0,0 +1,169 @@
+package com.marcusslover.plus.lib.container;
+
+import com.marcusslover.plus.lib.container.type.MapContainer;
+import net.kyori.adventure.text.Component;
+import org.bukkit.Bukkit;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads the data of players before they join and unloads it when they quit.
+ * <p>
+ * The object of a player is read during {@link AsyncPlayerPreLoginEvent}, on the async login thread,
+ * and put in the cache during {@link PlayerLoginEvent}, on the main thread before the player joins,
+ * so {@code loadData} in {@code PlayerJoinEvent} and later is served from the cache.
+ * The login thread never waits for the main thread. If the object could not be read,
+ * the login is denied instead of letting the player in with empty data.
+ * </p>
+ * <p>
+ * When the player quits, the object is unloaded and saved with {@code saveDataAsync},
+ * i.e. queued in the write-behind queue of the container.
+ * Objects read for a login that was denied afterwards are never cached,
+ * those whose login never happened are dropped after {@link #EXPIRY} seconds.
+ * </p>
+ * <p>
+ * The preloader registers its own bukkit listeners, independent of the priorities of other listeners:
+ * the object is read at {@link EventPriority#HIGHEST}, so the login can still be denied,
+ * and cached at {@link EventPriority#MONITOR}, once the result of the login is final.
+ * </p>
+ * <pre>{@code
+ * new PlayerDataPreloader<>(playerContainer).start(plugin);
+ * }</pre>
+ *
+ * @param <V> Value type.
+ */
+public class PlayerDataPreloader<V> implements Listener {
+    /*Seconds after which an object read for a login that never happened is dropped*/
+    public static final long EXPIRY = 60L;
+
+    private final @NotNull MapContainer<UUID, V> container;
+    /*Objects read on the login thread, waiting to be cached when the player logs in*/
+    private final @NotNull Map<UUID, Preloaded<V>> preloaded = new ConcurrentHashMap<>();
+    private @NotNull Component failureMessage = Component.text("Failed to load your data, please try again later.");
+    private @Nullable Plugin plugin;
+
+    /**
+     * Creates a new preloader.
+     *
+     * @param container Container of the player data, keyed by the unique ids of the players.
+     */
+    public PlayerDataPreloader(@NotNull MapContainer<UUID, V> container) {
+        this.container = container;
+    }
+
+    /**
+     * Sets the message of the players whose data could not be loaded.
+     *
+     * @param failureMessage The kick message.
+     * @return This preloader.
+     */
+    public @NotNull PlayerDataPreloader<V> setFailureMessage(@NotNull Component failureMessage) {
+        this.failureMessage = failureMessage;
+        return this;
+    }
+
+    /**
+     * Starts preloading the data of joining players.
+     * <p>
+     * The container has to be initialized first.
+     * </p>
+     *
+     * @param plugin Plugin owning the preloader.
+     */
+    public void start(@NotNull Plugin plugin) {
+        if (this.plugin != null) {
+            return;
+        }
+        Bukkit.getPluginManager().registerEvents(this, plugin);
+        this.plugin = plugin;
+    }
+
+    /**
+     * Stops preloading the data of joining players.
+     * <p>
+     * Objects of the online players stay in the cache.
+     * </p>
+     */
+    public void stop() {
+        if (this.plugin == null) {
+            return;
+        }
+        HandlerList.unregisterAll(this);
+        this.preloaded.clear();
+        this.plugin = null;
+    }
+
+    /**
+     * Checks if the preloader is running.
+     *
+     * @return True if running.
+     */
+    public boolean isRunning() {
+        return this.plugin != null;
+    }
+
+    /*Not MONITOR, the login is denied if the object could not be read*/
+    @EventHandler(priority = EventPriority.HIGHEST)
+    public void onPreLogin(@NotNull AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            return;
+        }
+        long now = System.nanoTime();
+        this.preloaded.values().removeIf(preloaded -> now - preloaded.time() > TimeUnit.SECONDS.toNanos(EXPIRY));
+        UUID uuid = event.getUniqueId();
+        try {
+            /*Read on the login thread, so that logins don't queue up behind each other*/
+            V data = this.container.readData(uuid);
+            this.preloaded.put(uuid, new Preloaded<>(data, now));
+        } catch (RuntimeException e) {
+            Bukkit.getLogger().warning("Failed to preload data of player " + event.getName() + ": " + e.getMessage());
+            e.printStackTrace();
+            event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER, this.failureMessage);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onLogin(@NotNull PlayerLoginEvent event) {
+        UUID uuid = event.getPlayer().getUniqueId();
+        Preloaded<V> preloaded = this.preloaded.remove(uuid);
+        if (preloaded == null || event.getResult() != PlayerLoginEvent.Result.ALLOWED) {
+            return;
+        }
+        /*An object that is already cached might have been modified and a pending write was queued after the read, both are newer*/
+        if (this.container.containsKeyLocally(uuid) || this.container.hasPendingWrite(uuid)) {
+            return;
+        }
+        this.container.storeLocally(uuid, preloaded.data());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(@NotNull PlayerQuitEvent event) {
+        UUID uuid = event.getPlayer().getUniqueId();
+        /*Read before the quit, it is stale now*/
+        this.preloaded.remove(uuid);
+        this.container.saveDataAsync(uuid);
+    }
+
+    /**
+     * Object read on the login thread.
+     *
+     * @param data The object.
+     * @param time Time it was read at, in nanoseconds.
+     * @param <V>  Value type.
+     */
+    private record Preloaded<V>(@NotNull V data, long time) {
+    }
+}
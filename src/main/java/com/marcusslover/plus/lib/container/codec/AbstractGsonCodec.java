@@ -0,0 +1,48 @@
+package com.marcusslover.plus.lib.container.codec;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Base of the codecs that convert values with Gson.
+ * <p>
+ * Type adapters are resolved once per type and kept by the codec,
+ * so reads and writes don't go through the lookup of Gson every time.
+ * </p>
+ */
+public abstract class AbstractGsonCodec implements IContainerCodec {
+    protected final @NotNull Gson gson;
+    private final @NotNull Map<Type, TypeAdapter<?>> adapters = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new codec.
+     *
+     * @param gson Gson instance used for the conversion.
+     */
+    protected AbstractGsonCodec(@NotNull Gson gson) {
+        this.gson = gson;
+    }
+
+    /**
+     * Gets the type adapter of the given type.
+     *
+     * @param type Type of the value.
+     * @param <V>  Value type.
+     * @return The type adapter.
+     */
+    protected <V> @NotNull TypeAdapter<V> getAdapter(@NotNull Type type) {
+        TypeAdapter<?> adapter = this.adapters.get(type);
+        if (adapter == null) {
+            adapter = this.gson.getAdapter(TypeToken.get(type));
+            this.adapters.putIfAbsent(type, adapter);
+        }
+        //noinspection unchecked
+        return (TypeAdapter<V>) adapter;
+    }
+}
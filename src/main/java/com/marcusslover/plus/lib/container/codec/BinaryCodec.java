@@ -0,0 +1,204 @@
+package com.marcusslover.plus.lib.container.codec;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonPrimitive;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Codec that stores values in a compact binary format.
+ * <p>
+ * Values are converted to a json tree with Gson first, so the same type adapters
+ * apply as with {@link JsonCodec}. The tree is then written as tagged binary tokens:
+ * no whitespace, no quotes and integers encoded as variable-length numbers.
+ * </p>
+ */
+public class BinaryCodec extends AbstractGsonCodec {
+    /*File header, "PLB" followed by the format version*/
+    private static final byte[] MAGIC = {'P', 'L', 'B', 1};
+    /*Token tags*/
+    private static final int NULL = 0;
+    private static final int TRUE = 1;
+    private static final int FALSE = 2;
+    private static final int INTEGER = 3;
+    private static final int DECIMAL = 4;
+    private static final int NUMBER = 5;
+    private static final int STRING = 6;
+    private static final int ARRAY = 7;
+    private static final int OBJECT = 8;
+
+    /**
+     * Creates a new binary codec.
+     *
+     * @param gson Gson instance used for the conversion.
+     */
+    public BinaryCodec(@NotNull Gson gson) {
+        super(gson);
+    }
+
+    @Override
+    public @NotNull String getExtension() {
+        return "bin";
+    }
+
+    @Override
+    public <V> @Nullable V decode(@NotNull InputStream inputStream, @NotNull Type type) throws IOException {
+        DataInputStream input = new DataInputStream(inputStream instanceof BufferedInputStream ? inputStream : new BufferedInputStream(inputStream));
+        for (byte expected : MAGIC) {
+            if (input.readByte() != expected) {
+                throw new IOException("Not a binary container file.");
+            }
+        }
+        JsonElement tree = this.readElement(input);
+        try {
+            return this.<V>getAdapter(type).fromJsonTree(tree);
+        } catch (JsonParseException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public <V> void encode(@NotNull V value, @NotNull Type type, @NotNull OutputStream outputStream) throws IOException {
+        JsonElement tree;
+        try {
+            tree = this.<V>getAdapter(type).toJsonTree(value);
+        } catch (JsonParseException e) {
+            throw new IOException(e);
+        }
+        DataOutputStream output = new DataOutputStream(outputStream);
+        output.write(MAGIC);
+        this.writeElement(output, tree);
+        output.flush();
+    }
+
+    private void writeElement(@NotNull DataOutputStream output, @NotNull JsonElement element) throws IOException {
+        if (element.isJsonNull()) {
+            output.writeByte(NULL);
+        } else if (element.isJsonPrimitive()) {
+            JsonPrimitive primitive = element.getAsJsonPrimitive();
+            if (primitive.isBoolean()) {
+                output.writeByte(primitive.getAsBoolean() ? TRUE : FALSE);
+            } else if (primitive.isString()) {
+                output.writeByte(STRING);
+                this.writeString(output, primitive.getAsString());
+            } else {
+                Number number = primitive.getAsNumber();
+                if (number instanceof Integer || number instanceof Long || number instanceof Short || number instanceof Byte) {
+                    output.writeByte(INTEGER);
+                    this.writeVarLong(output, number.longValue());
+                } else if (number instanceof Double || number instanceof Float) {
+                    output.writeByte(DECIMAL);
+                    output.writeDouble(number.doubleValue());
+                } else {
+                    /*Arbitrary precision numbers are kept as text*/
+                    output.writeByte(NUMBER);
+                    this.writeString(output, number.toString());
+                }
+            }
+        } else if (element.isJsonArray()) {
+            JsonArray array = element.getAsJsonArray();
+            output.writeByte(ARRAY);
+            this.writeVarLong(output, array.size());
+            for (JsonElement child : array) {
+                this.writeElement(output, child);
+            }
+        } else {
+            JsonObject object = element.getAsJsonObject();
+            output.writeByte(OBJECT);
+            this.writeVarLong(output, object.size());
+            for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+                this.writeString(output, entry.getKey());
+                this.writeElement(output, entry.getValue());
+            }
+        }
+    }
+
+    private @NotNull JsonElement readElement(@NotNull DataInputStream input) throws IOException {
+        int tag = input.readUnsignedByte();
+        return switch (tag) {
+            case NULL -> JsonNull.INSTANCE;
+            case TRUE -> new JsonPrimitive(true);
+            case FALSE -> new JsonPrimitive(false);
+            case INTEGER -> new JsonPrimitive(this.readVarLong(input));
+            case DECIMAL -> new JsonPrimitive(input.readDouble());
+            case NUMBER -> new JsonPrimitive(new BigDecimal(this.readString(input)));
+            case STRING -> new JsonPrimitive(this.readString(input));
+            case ARRAY -> {
+                int size = this.readSize(input);
+                JsonArray array = new JsonArray(size);
+                for (int i = 0; i < size; i++) {
+                    array.add(this.readElement(input));
+                }
+                yield array;
+            }
+            case OBJECT -> {
+                int size = this.readSize(input);
+                JsonObject object = new JsonObject();
+                for (int i = 0; i < size; i++) {
+                    String key = this.readString(input);
+                    object.add(key, this.readElement(input));
+                }
+                yield object;
+            }
+            default -> throw new IOException("Unknown token tag: " + tag);
+        };
+    }
+
+    private void writeString(@NotNull DataOutputStream output, @NotNull String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        this.writeVarLong(output, bytes.length);
+        output.write(bytes);
+    }
+
+    private @NotNull String readString(@NotNull DataInputStream input) throws IOException {
+        byte[] bytes = new byte[this.readSize(input)];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int readSize(@NotNull DataInputStream input) throws IOException {
+        long size = this.readVarLong(input);
+        if (size < 0 || size > Integer.MAX_VALUE) {
+            throw new IOException("Invalid size: " + size);
+        }
+        return (int) size;
+    }
+
+    private void writeVarLong(@NotNull DataOutputStream output, long value) throws IOException {
+        /*Zig-zag encoding keeps small negative numbers short*/
+        long zigZag = (value << 1) ^ (value >> 63);
+        while ((zigZag & ~0x7FL) != 0) {
+            output.writeByte((int) ((zigZag & 0x7F) | 0x80));
+            zigZag >>>= 7;
+        }
+        output.writeByte((int) zigZag);
+    }
+
+    private long readVarLong(@NotNull DataInputStream input) throws IOException {
+        long zigZag = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = input.readUnsignedByte();
+            zigZag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigZag >>> 1) ^ -(zigZag & 1);
+            }
+        }
+        throw new IOException("Malformed variable-length number.");
+    }
+}
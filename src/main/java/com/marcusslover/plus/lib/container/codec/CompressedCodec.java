@@ -0,0 +1,161 @@
+package com.marcusslover.plus.lib.container.codec;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.lang.reflect.Type;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Codec that compresses the output of another codec.
+ * <p>
+ * Values are streamed through the compressor while they are encoded,
+ * and through the decompressor while they are decoded, nothing is buffered as a whole.
+ * The extension of the wrapped codec is kept, so the files keep their names.
+ * </p>
+ * <p>
+ * The format of every file is detected when it is read: files written uncompressed,
+ * e.g. before the compression was enabled, or with the other {@link Compression} are read as well.
+ * They are written compressed the next time they are saved.
+ * </p>
+ */
+public class CompressedCodec implements IContainerCodec {
+    private static final int BUFFER_SIZE = 8192;
+    /*First two bytes of a gzip stream*/
+    private static final int GZIP_MAGIC = 0x1F8B;
+
+    private final @NotNull IContainerCodec codec;
+    private final @NotNull Compression compression;
+
+    /**
+     * Creates a new compressed codec.
+     *
+     * @param codec       Codec whose output is compressed.
+     * @param compression Algorithm used to compress the output.
+     */
+    public CompressedCodec(@NotNull IContainerCodec codec, @NotNull Compression compression) {
+        this.codec = codec;
+        this.compression = compression;
+    }
+
+    /**
+     * Gets the codec whose output is compressed.
+     *
+     * @return The wrapped codec.
+     */
+    public @NotNull IContainerCodec getCodec() {
+        return this.codec;
+    }
+
+    /**
+     * Gets the algorithm used to compress the output.
+     *
+     * @return The compression.
+     */
+    public @NotNull Compression getCompression() {
+        return this.compression;
+    }
+
+    @Override
+    public @NotNull String getExtension() {
+        return this.codec.getExtension();
+    }
+
+    @Override
+    public <V> @Nullable V decode(@NotNull InputStream inputStream, @NotNull Type type) throws IOException {
+        PushbackInputStream input = new PushbackInputStream(inputStream, 2);
+        byte[] header = input.readNBytes(2);
+        input.unread(header);
+        if (header.length < 2) {
+            return this.codec.decode(input, type);
+        }
+        int magic = (header[0] & 0xFF) << 8 | header[1] & 0xFF;
+        if (magic == GZIP_MAGIC) {
+            /*Closing the decompressor releases it, the shield keeps the input open*/
+            try (InputStream decompressed = new GZIPInputStream(new ShieldInputStream(input), BUFFER_SIZE)) {
+                return this.codec.decode(decompressed, type);
+            }
+        }
+        if (isZlibHeader(magic)) {
+            Inflater inflater = new Inflater();
+            try {
+                return this.codec.decode(new InflaterInputStream(input, inflater, BUFFER_SIZE), type);
+            } finally {
+                inflater.end();
+            }
+        }
+        /*Uncompressed file*/
+        return this.codec.decode(input, type);
+    }
+
+    @Override
+    public <V> void encode(@NotNull V value, @NotNull Type type, @NotNull OutputStream outputStream) throws IOException {
+        if (this.compression == Compression.GZIP) {
+            /*Closing the compressor finishes the stream and releases it, the shield keeps the output open*/
+            try (OutputStream compressed = new GZIPOutputStream(new ShieldOutputStream(outputStream), BUFFER_SIZE)) {
+                this.codec.encode(value, type, compressed);
+            }
+            return;
+        }
+        Deflater deflater = new Deflater();
+        try {
+            DeflaterOutputStream compressed = new DeflaterOutputStream(outputStream, deflater, BUFFER_SIZE);
+            this.codec.encode(value, type, compressed);
+            compressed.finish();
+            compressed.flush();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static boolean isZlibHeader(int header) {
+        /*Deflate method, no preset dictionary and a valid header checksum, json or binary files never start like that*/
+        return (header & 0x0F00) == 0x0800 && (header & 0x20) == 0 && header % 31 == 0;
+    }
+
+    /**
+     * Keeps the wrapped stream open when closed, the caller owns it.
+     */
+    private static final class ShieldInputStream extends FilterInputStream {
+
+        private ShieldInputStream(@NotNull InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public void close() {
+            // the caller closes the stream
+        }
+    }
+
+    /**
+     * Keeps the wrapped stream open when closed, the caller owns it.
+     */
+    private static final class ShieldOutputStream extends FilterOutputStream {
+
+        private ShieldOutputStream(@NotNull OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte @NotNull [] b, int off, int len) throws IOException {
+            this.out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.out.flush();
+        }
+    }
+}
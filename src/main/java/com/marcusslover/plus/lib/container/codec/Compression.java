@@ -0,0 +1,15 @@
+package com.marcusslover.plus.lib.container.codec;
+
+/**
+ * Compression algorithm of {@link CompressedCodec}.
+ */
+public enum Compression {
+    /**
+     * Gzip format, readable by common tools like {@code zcat}.
+     */
+    GZIP,
+    /**
+     * Zlib-wrapped deflate, slightly smaller headers than gzip.
+     */
+    DEFLATE
+}
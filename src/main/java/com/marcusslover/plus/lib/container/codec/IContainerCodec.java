@@ -0,0 +1,94 @@
+package com.marcusslover.plus.lib.container.codec;
+
+import com.google.gson.Gson;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+
+/**
+ * Represents the storage format of container files.
+ * <p>
+ * A codec converts values to bytes and back.
+ * Default implementations are {@link JsonCodec} and {@link BinaryCodec},
+ * both can be wrapped in a {@link CompressedCodec}.
+ * </p>
+ */
+public interface IContainerCodec {
+
+    /**
+     * Creates a codec that stores values as pretty-printed json.
+     *
+     * @param gson Gson instance used for the conversion.
+     * @return The codec.
+     */
+    static @NotNull IContainerCodec json(@NotNull Gson gson) {
+        return new JsonCodec(gson, true);
+    }
+
+    /**
+     * Creates a codec that stores values as compact json, without any whitespace.
+     *
+     * @param gson Gson instance used for the conversion.
+     * @return The codec.
+     */
+    static @NotNull IContainerCodec compactJson(@NotNull Gson gson) {
+        return new JsonCodec(gson, false);
+    }
+
+    /**
+     * Creates a codec that stores values in a compact binary format.
+     *
+     * @param gson Gson instance used for the conversion.
+     * @return The codec.
+     */
+    static @NotNull IContainerCodec binary(@NotNull Gson gson) {
+        return new BinaryCodec(gson);
+    }
+
+    /**
+     * Creates a codec that compresses the output of the given codec.
+     * <p>
+     * Look at {@link CompressedCodec} for more information.
+     * </p>
+     *
+     * @param codec       Codec whose output is compressed.
+     * @param compression Algorithm used to compress the output.
+     * @return The codec.
+     */
+    static @NotNull IContainerCodec compressed(@NotNull IContainerCodec codec, @NotNull Compression compression) {
+        return new CompressedCodec(codec, compression);
+    }
+
+    /**
+     * Gets the file extension of this format, without the dot.
+     *
+     * @return The file extension.
+     */
+    @NotNull String getExtension();
+
+    /**
+     * Reads a value from the stream.
+     *
+     * @param inputStream Stream to read from.
+     * @param type        Type of the value.
+     * @param <V>         Value type.
+     * @return The value or null if the stream holds a null value.
+     * @throws IOException If the value could not be read.
+     */
+    <V> @Nullable V decode(@NotNull InputStream inputStream, @NotNull Type type) throws IOException;
+
+    /**
+     * Writes a value to the stream.
+     *
+     * @param value        Value to write.
+     * @param type         Type of the value.
+     * @param outputStream Stream to write to.
+     * @param <V>          Value type.
+     * @throws IOException If the value could not be written.
+     */
+    <V> void encode(@NotNull V value, @NotNull Type type, @NotNull OutputStream outputStream) throws IOException;
+}
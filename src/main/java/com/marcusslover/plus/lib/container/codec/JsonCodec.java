@@ -0,0 +1,112 @@
+package com.marcusslover.plus.lib.container.codec;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.CharArrayReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Codec that stores values as json text.
+ * <p>
+ * Values are streamed straight through the cached type adapter,
+ * without building an intermediate json tree.
+ * </p>
+ * <p>
+ * Json is always written as UTF-8. Older versions of the library wrote the files
+ * in the default charset of the platform, so on platforms with a different default charset,
+ * content that is not valid UTF-8 is read with the default charset instead.
+ * </p>
+ */
+public class JsonCodec extends AbstractGsonCodec {
+    private final boolean pretty;
+
+    /**
+     * Creates a new json codec.
+     *
+     * @param gson   Gson instance used for the conversion.
+     * @param pretty True to indent the output, false to write it without any whitespace.
+     */
+    public JsonCodec(@NotNull Gson gson, boolean pretty) {
+        super(gson);
+        this.pretty = pretty;
+    }
+
+    @Override
+    public @NotNull String getExtension() {
+        return "json";
+    }
+
+    @Override
+    public <V> @Nullable V decode(@NotNull InputStream inputStream, @NotNull Type type) throws IOException {
+        JsonReader jsonReader = this.gson.newJsonReader(openReader(inputStream));
+        /*Same leniency as Gson#fromJson*/
+        jsonReader.setLenient(true);
+        try {
+            jsonReader.peek();
+        } catch (EOFException e) {
+            /*Empty file*/
+            return null;
+        }
+        try {
+            return this.<V>getAdapter(type).read(jsonReader);
+        } catch (JsonParseException | IllegalStateException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static @NotNull Reader openReader(@NotNull InputStream inputStream) throws IOException {
+        Charset platform = Charset.defaultCharset();
+        if (platform.equals(StandardCharsets.UTF_8)) {
+            return new InputStreamReader(inputStream, StandardCharsets.UTF_8);
+        }
+        /*Files of older versions might be in the platform charset, detect it by validating the content*/
+        byte[] bytes = inputStream.readAllBytes();
+        try {
+            CharBuffer decoded = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(bytes));
+            return new CharArrayReader(decoded.array(), decoded.position(), decoded.remaining());
+        } catch (CharacterCodingException e) {
+            return new StringReader(new String(bytes, platform));
+        }
+    }
+
+    @Override
+    public <V> void encode(@NotNull V value, @NotNull Type type, @NotNull OutputStream outputStream) throws IOException {
+        Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+        /*Same settings as Gson#toJson, the indentation depends on the codec*/
+        JsonWriter jsonWriter = this.gson.newJsonWriter(writer);
+        if (!this.pretty) {
+            jsonWriter.setIndent("");
+        }
+        jsonWriter.setLenient(true);
+        jsonWriter.setHtmlSafe(this.gson.htmlSafe());
+        try {
+            this.<V>getAdapter(type).write(jsonWriter, value);
+        } catch (JsonParseException e) {
+            throw new IOException(e);
+        }
+        jsonWriter.flush();
+    }
+}
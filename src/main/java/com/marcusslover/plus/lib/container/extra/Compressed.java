@@ -0,0 +1,30 @@
+package com.marcusslover.plus.lib.container.extra;
+
+import com.marcusslover.plus.lib.container.codec.Compression;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotate your custom container class with this annotation to compress its files.
+ * <p>
+ * The default codec of the container is wrapped in a
+ * {@link com.marcusslover.plus.lib.container.codec.CompressedCodec}. Files keep their names,
+ * existing uncompressed files are still read and get compressed the next time they are saved.
+ * Containers overriding {@code getCodec} should use
+ * {@link com.marcusslover.plus.lib.container.codec.IContainerCodec#compressed} instead.
+ * </p>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Compressed {
+
+    /**
+     * Algorithm used to compress the files.
+     *
+     * @return The compression.
+     */
+    Compression value() default Compression.GZIP;
+}
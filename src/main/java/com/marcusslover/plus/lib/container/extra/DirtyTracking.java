@@ -0,0 +1,35 @@
+package com.marcusslover.plus.lib.container.extra;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotate your custom map container class with this annotation to skip
+ * writing objects that have not changed.
+ * <p>
+ * Call {@code markDirty} after modifying an object, {@code update} and {@code saveData}
+ * then only write the objects that were marked dirty since they were last persisted.
+ * </p>
+ * <p>
+ * With {@link #compareHash()} enabled, every object is encoded when it is written
+ * and the write is skipped if the content hash matches the last persisted content.
+ * This catches unchanged objects even when they were not marked dirty,
+ * at the cost of hashing each file when it is loaded and written.
+ * </p>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface DirtyTracking {
+
+    /**
+     * Whether the encoded content is compared with the last persisted content.
+     * <p>
+     * If disabled, objects that were not marked dirty are never written.
+     * </p>
+     *
+     * @return True to compare the content hashes.
+     */
+    boolean compareHash() default false;
+}
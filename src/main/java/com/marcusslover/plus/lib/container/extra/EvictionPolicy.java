@@ -0,0 +1,159 @@
+package com.marcusslover.plus.lib.container.extra;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToLongBiFunction;
+
+/**
+ * Policy that keeps the cache of a {@link com.marcusslover.plus.lib.container.type.MapContainer} bounded.
+ * <p>
+ * Entries are evicted when the cache holds more than {@link #maximumSize()} entries,
+ * when the total weight exceeds {@link #maximumWeight()} or when an entry
+ * was not accessed for {@link #expireAfterAccess()}.
+ * The least recently accessed entries are evicted first.
+ * </p>
+ * <p>
+ * A single value heavier than {@link #maximumWeight()} is pinned: it doesn't count towards the total weight
+ * and is only evicted because of the size or expiration limits, so it isn't evicted right after it is loaded.
+ * Whether a value is pinned is decided with the limit at the time it is stored.
+ * </p>
+ * <p>
+ * Evicted values are saved through the normal write path of the container
+ * and {@code onValueUnloaded} is called for each of them.
+ * </p>
+ *
+ * @param <K> Key type.
+ * @param <V> Value type.
+ */
+@Getter
+@Setter
+@Accessors(fluent = true, chain = true)
+public class EvictionPolicy<K, V> {
+    /*Limits, zero or null means no limit*/
+    private int maximumSize = 0;
+    private long maximumWeight = 0;
+    private @Nullable ToLongBiFunction<K, V> weigher = null;
+    private @Nullable Duration expireAfterAccess = null;
+
+    /*Entries in access order, the eldest entry comes first*/
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private final @NotNull Map<K, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private long totalWeight = 0;
+
+    /**
+     * Creates a new policy without any limits.
+     *
+     * @param <K> Key type.
+     * @param <V> Value type.
+     * @return The policy.
+     */
+    public static <K, V> @NotNull EvictionPolicy<K, V> create() {
+        return new EvictionPolicy<>();
+    }
+
+    /**
+     * Records that the value was put in the cache.
+     *
+     * @param key   Key of the value.
+     * @param value The value.
+     */
+    public synchronized void recordStore(@NotNull K key, @NotNull V value) {
+        long weight = this.weigher == null ? 1 : Math.max(0, this.weigher.applyAsLong(key, value));
+        if (this.maximumWeight > 0 && weight > this.maximumWeight) {
+            /*Pinned, evicting it for its weight would unload it as soon as it is loaded*/
+            weight = 0;
+        }
+        Entry previous = this.entries.put(key, new Entry(System.nanoTime(), weight));
+        if (previous != null) {
+            this.totalWeight -= previous.weight;
+        }
+        this.totalWeight += weight;
+    }
+
+    /**
+     * Records that the value was accessed.
+     *
+     * @param key Key of the value.
+     */
+    public synchronized void recordAccess(@NotNull K key) {
+        Entry entry = this.entries.get(key);
+        if (entry != null) {
+            entry.accessed = System.nanoTime();
+        }
+    }
+
+    /**
+     * Records that the value was removed from the cache.
+     *
+     * @param key Key of the value.
+     */
+    public synchronized void recordRemoval(@NotNull K key) {
+        Entry entry = this.entries.remove(key);
+        if (entry != null) {
+            this.totalWeight -= entry.weight;
+        }
+    }
+
+    /**
+     * Collects the keys that should be evicted right now.
+     * <p>
+     * This function does not remove anything, the keys are removed
+     * once the container calls {@link #recordRemoval(Object)}.
+     * </p>
+     *
+     * @return The keys to evict, the least recently accessed first.
+     */
+    public synchronized @NotNull List<K> collectVictims() {
+        List<K> victims = new ArrayList<>();
+        int size = this.entries.size();
+        long weight = this.totalWeight;
+        long cutoff = this.expireAfterAccess == null ? 0 : System.nanoTime() - this.expireAfterAccess.toNanos();
+        for (Map.Entry<K, Entry> entry : this.entries.entrySet()) {
+            boolean oversized = this.maximumSize > 0 && size > this.maximumSize;
+            boolean overweight = this.maximumWeight > 0 && weight > this.maximumWeight;
+            boolean expired = this.expireAfterAccess != null && entry.getValue().accessed - cutoff < 0;
+            if (!oversized && !overweight && !expired) {
+                break;
+            }
+            if (!oversized && !expired && entry.getValue().weight == 0) {
+                /*Evicting it doesn't reduce the weight*/
+                continue;
+            }
+            victims.add(entry.getKey());
+            size--;
+            weight -= entry.getValue().weight;
+        }
+        return victims;
+    }
+
+    /**
+     * Forgets all the recorded entries.
+     */
+    public synchronized void clear() {
+        this.entries.clear();
+        this.totalWeight = 0;
+    }
+
+    private static final class Entry {
+        private final long weight;
+        private long accessed;
+
+        private Entry(long accessed, long weight) {
+            this.accessed = accessed;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.marcusslover.plus.lib.container.extra;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotate your custom map container class with this annotation to record
+ * its pending writes in a write-ahead journal.
+ * <p>
+ * Every write that is not on the disk yet, e.g. an {@code update} in {@link WriteBehind} mode,
+ * is also appended to an append-only journal file. Appended records are synced to the disk
+ * together, at most {@link #syncDelay()} milliseconds after they were appended.
+ * After a crash, the journal is replayed into the storage when the container is initialized,
+ * so the write-behind delay can be long without losing data.
+ * Objects written directly, e.g. with {@code writeData}, are synced to the journal before they are written,
+ * so an older record of the same object is never replayed over them.
+ * </p>
+ * <p>
+ * The journal is truncated whenever the container is flushed,
+ * and automatically once it grows larger than {@link #maxSize()}.
+ * </p>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Journaled {
+
+    /**
+     * Time in milliseconds to wait before the appended records are synced to the disk.
+     * Records appended in this window share a single sync.
+     *
+     * @return The delay in milliseconds.
+     */
+    long syncDelay() default 50L;
+
+    /**
+     * Size in bytes of the journal that triggers a flush of the container.
+     *
+     * @return The maximum size in bytes.
+     */
+    long maxSize() default 16L * 1024L * 1024L;
+}
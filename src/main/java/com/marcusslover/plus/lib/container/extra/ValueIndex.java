@@ -0,0 +1,114 @@
+package com.marcusslover.plus.lib.container.extra;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Secondary index of the objects loaded in a {@link com.marcusslover.plus.lib.container.type.MapContainer}.
+ * <p>
+ * The index maps the values extracted from the objects to their keys,
+ * so lookups like "the clan with the tag X" don't have to scan the whole cache.
+ * It is kept up to date by the container whenever an object is stored, updated or unloaded.
+ * If an indexed property of an object changes, call {@code update} or {@code reindex}
+ * of the container to refresh the index.
+ * </p>
+ * <p>
+ * Objects for which the extractor returns null are not indexed.
+ * </p>
+ *
+ * @param <K> Key type.
+ * @param <V> Value type.
+ * @param <I> Indexed value type.
+ */
+public class ValueIndex<K, V, I> {
+    private final @NotNull Function<V, I> extractor;
+    private final @NotNull Map<I, Set<K>> keys = new HashMap<>();
+    /*Indexed value of every key, the object itself might have changed since*/
+    private final @NotNull Map<K, I> values = new HashMap<>();
+
+    /**
+     * Creates a new index.
+     *
+     * @param extractor Function extracting the indexed value from the object.
+     */
+    public ValueIndex(@NotNull Function<V, I> extractor) {
+        this.extractor = extractor;
+    }
+
+    /**
+     * Indexes the object, replacing its previous entry.
+     *
+     * @param key   Key of the object.
+     * @param value The object.
+     */
+    public synchronized void add(@NotNull K key, @NotNull V value) {
+        I indexed = this.extractor.apply(value);
+        I previous = indexed == null ? this.values.remove(key) : this.values.put(key, indexed);
+        if (Objects.equals(previous, indexed)) {
+            return;
+        }
+        if (previous != null) {
+            this.unlink(previous, key);
+        }
+        if (indexed != null) {
+            this.keys.computeIfAbsent(indexed, i -> new LinkedHashSet<>(2)).add(key);
+        }
+    }
+
+    /**
+     * Removes the object from the index.
+     *
+     * @param key Key of the object.
+     */
+    public synchronized void remove(@NotNull K key) {
+        I previous = this.values.remove(key);
+        if (previous != null) {
+            this.unlink(previous, key);
+        }
+    }
+
+    /**
+     * Gets the keys of the objects with the given indexed value.
+     *
+     * @param value Indexed value.
+     * @return Snapshot of the keys.
+     */
+    public synchronized @NotNull List<K> get(@NotNull I value) {
+        Set<K> found = this.keys.get(value);
+        return found == null ? List.of() : List.copyOf(found);
+    }
+
+    /**
+     * Gets the key of any object with the given indexed value.
+     *
+     * @param value Indexed value.
+     * @return The key or null if no object has the value.
+     */
+    public synchronized @Nullable K getFirst(@NotNull I value) {
+        Set<K> found = this.keys.get(value);
+        return found == null ? null : found.iterator().next();
+    }
+
+    /**
+     * Forgets all the indexed objects.
+     */
+    public synchronized void clear() {
+        this.keys.clear();
+        this.values.clear();
+    }
+
+    private void unlink(@NotNull I indexed, @NotNull K key) {
+        Set<K> found = this.keys.get(indexed);
+        if (found != null && found.remove(key) && found.isEmpty()) {
+            this.keys.remove(indexed);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.marcusslover.plus.lib.container.extra;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotate your custom container class with this annotation to persist its data
+ * in write-behind mode.
+ * <p>
+ * Instead of writing the file right away, {@code update} and {@code saveData} only
+ * mark the key as pending. Repeated updates of the same key are coalesced and
+ * written in batches by the container I/O executor.
+ * Use {@link com.marcusslover.plus.lib.container.ContainerManager#flushAll()} on shutdown
+ * to make sure every pending write reaches the disk.
+ * </p>
+ * <p>
+ * Objects are encoded when they are queued, on the calling thread, so later modifications
+ * don't race with the I/O thread. Only the encoded bytes are written on the I/O thread.
+ * </p>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface WriteBehind {
+
+    /**
+     * Time in milliseconds to wait before flushing the pending writes.
+     * Updates that happen in this window are coalesced into a single write.
+     *
+     * @return The delay in milliseconds.
+     */
+    long delay() default 1000L;
+
+    /**
+     * Maximum amount of writes performed in a single batch.
+     *
+     * @return The batch size.
+     */
+    int batchSize() default 64;
+}
@@ -0,0 +1,299 @@
+package com.marcusslover.plus.lib.container.io;
+
+import com.marcusslover.plus.lib.container.storage.IContainerStorage;
+import com.marcusslover.plus.lib.container.storage.SegmentStorage;
+import org.bukkit.Bukkit;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Write-ahead journal of the writes that are not in the storage of a container yet.
+ * <p>
+ * Appended objects are kept in memory and written to the journal file in groups,
+ * every group is followed by a single sync. Multiple appends of the same entry
+ * within a group are coalesced, only the latest object is written.
+ * Objects are appended already encoded, by the thread that modified them.
+ * </p>
+ * <p>
+ * Journal files use the format of {@link SegmentStorage}, a record with an empty value marks a deletion.
+ * Each {@link #checkpoint()} starts a new file and deletes the old one once the storage is up-to-date.
+ * Files left behind by a crash are replayed into the storage when the journal is opened.
+ * </p>
+ */
+public class ContainerJournal {
+    private static final String PREFIX = ".journal-";
+    private static final String SUFFIX = ".seg";
+    private static final byte[] DELETED = new byte[0];
+
+    private final @NotNull Object fileLock = new Object();
+    private final @NotNull Object pendingLock = new Object();
+    private final @NotNull AtomicBoolean scheduled = new AtomicBoolean(false);
+    private final @NotNull File folder;
+    private final @NotNull ScheduledExecutorService executor;
+    private final long syncDelay;
+    private final long maxSize;
+    private final @NotNull Runnable persistAll;
+    private final int replayedCount;
+    /*Encoded objects appended since the last group, null means deletion*/
+    private @NotNull Map<String, byte[]> pending = new LinkedHashMap<>();
+    private @NotNull SegmentStorage segment;
+    private long sequence;
+
+    /**
+     * Opens the journal and replays the files left behind by a crash.
+     *
+     * @param folder     Folder of the journal files.
+     * @param storage    Storage the replayed objects are written to.
+     * @param executor   Executor that writes and syncs the journal.
+     * @param syncDelay  Delay in milliseconds before the appended objects are synced.
+     * @param maxSize    Size of the journal file that triggers a checkpoint.
+     * @param persistAll Function writing all the pending objects of the container to the storage.
+     * @throws RuntimeException If the journal could not be opened or replayed.
+     */
+    public ContainerJournal(@NotNull File folder, @NotNull IContainerStorage storage, @NotNull ScheduledExecutorService executor,
+                            long syncDelay, long maxSize, @NotNull Runnable persistAll) {
+        this.folder = folder;
+        this.executor = executor;
+        this.syncDelay = Math.max(0L, syncDelay);
+        this.maxSize = Math.max(0L, maxSize);
+        this.persistAll = persistAll;
+        try {
+            this.replayedCount = this.replay(storage);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        this.segment = this.openSegment();
+    }
+
+    /**
+     * Gets the amount of entries replayed when the journal was opened.
+     *
+     * @return The amount of replayed entries.
+     */
+    public int getReplayedCount() {
+        return this.replayedCount;
+    }
+
+    /**
+     * Appends the object to the journal.
+     * <p>
+     * The object is written and synced asynchronously, as part of the next group.
+     * The bytes must not change once they are appended.
+     * </p>
+     *
+     * @param name  Name of the entry.
+     * @param bytes The encoded object, null means deletion.
+     */
+    public void append(@NotNull String name, byte @Nullable [] bytes) {
+        synchronized (this.pendingLock) {
+            /*Re-insert so that the entry moves to the end*/
+            this.pending.remove(name);
+            this.pending.put(name, bytes);
+        }
+        if (this.scheduled.compareAndSet(false, true)) {
+            this.executor.schedule(this::commit, this.syncDelay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Appends the object to the journal and syncs it right away, on the calling thread.
+     * <p>
+     * Used before the object is written to the storage directly, so that an older record
+     * of the same entry is never replayed over it after a crash.
+     * The objects appended before are written with it, as part of the same group.
+     * </p>
+     *
+     * @param name  Name of the entry.
+     * @param bytes The encoded object, null means deletion.
+     * @throws RuntimeException If the journal could not be written, the object stays pending then.
+     */
+    public void appendSync(@NotNull String name, byte @Nullable [] bytes) {
+        synchronized (this.pendingLock) {
+            this.pending.remove(name);
+            this.pending.put(name, bytes);
+        }
+        synchronized (this.fileLock) {
+            try {
+                this.writePending();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Writes all the pending objects of the container and truncates the journal.
+     * <p>
+     * A new journal file is started first. Objects appended but not written to the journal yet
+     * stay pending and go to the new file, so they are never dropped.
+     * The pending writes of the container are flushed while the journal is locked,
+     * the old file is deleted only once they are in the storage.
+     * If they could not be written, the old file is kept.
+     * </p>
+     */
+    public void checkpoint() {
+        synchronized (this.fileLock) {
+            SegmentStorage old = this.segment;
+            SegmentStorage next = this.openSegment();
+            this.segment = next;
+            try {
+                this.persistAll.run();
+            } catch (RuntimeException e) {
+                /*Nothing was written to the new file, the journal is still locked*/
+                this.segment = old;
+                this.sequence--;
+                try {
+                    next.close();
+                } catch (IOException ignored) {
+                    // deleted right away
+                }
+                if (!next.getFile().delete()) {
+                    Bukkit.getLogger().warning("Failed to delete journal file: " + next.getFile().getAbsolutePath());
+                }
+                throw e;
+            }
+            try {
+                old.close();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            if (!old.getFile().delete()) {
+                Bukkit.getLogger().warning("Failed to delete journal file: " + old.getFile().getAbsolutePath());
+            }
+        }
+    }
+
+    private void commit() {
+        this.scheduled.set(false);
+        synchronized (this.fileLock) {
+            try {
+                this.writePending();
+            } catch (IOException | RuntimeException e) {
+                Bukkit.getLogger().warning("Failed to write container journal: " + e.getMessage());
+                e.printStackTrace();
+                return;
+            }
+            if (this.segment.getSize() > this.maxSize) {
+                try {
+                    this.checkpoint();
+                } catch (RuntimeException e) {
+                    Bukkit.getLogger().warning("Failed to checkpoint container journal: " + e.getMessage());
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes and syncs the objects appended since the last group, the journal file must be locked.
+     * <p>
+     * If they could not be written, they stay pending and are retried later.
+     * </p>
+     *
+     * @throws IOException If the journal could not be written.
+     */
+    private void writePending() throws IOException {
+        Map<String, byte[]> group = this.takePending();
+        if (group.isEmpty()) {
+            return;
+        }
+        try {
+            for (Map.Entry<String, byte[]> entry : group.entrySet()) {
+                byte[] bytes = Objects.requireNonNullElse(entry.getValue(), DELETED);
+                this.segment.write(entry.getKey(), outputStream -> outputStream.write(bytes));
+            }
+            this.segment.flush();
+        } catch (IOException | RuntimeException e) {
+            this.restore(group);
+            throw e;
+        }
+    }
+
+    private @NotNull Map<String, byte[]> takePending() {
+        synchronized (this.pendingLock) {
+            Map<String, byte[]> taken = this.pending;
+            this.pending = new LinkedHashMap<>();
+            return taken;
+        }
+    }
+
+    private void restore(@NotNull Map<String, byte[]> group) {
+        synchronized (this.pendingLock) {
+            /*Newer appends win over the failed group*/
+            group.forEach((name, value) -> {
+                if (!this.pending.containsKey(name)) {
+                    this.pending.put(name, value);
+                }
+            });
+        }
+        if (this.scheduled.compareAndSet(false, true)) {
+            this.executor.schedule(this::commit, Math.max(1000L, this.syncDelay), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private @NotNull SegmentStorage openSegment() {
+        /*Compaction is not needed, the file is dropped at the next checkpoint*/
+        return new SegmentStorage(new File(this.folder, PREFIX + this.sequence++ + SUFFIX), Long.MAX_VALUE, false);
+    }
+
+    private int replay(@NotNull IContainerStorage storage) throws IOException {
+        File[] files = this.folder.listFiles((dir, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+        if (files == null || files.length == 0) {
+            return 0;
+        }
+        /*Older files first, so that the newest record of each entry wins*/
+        Arrays.sort(files, Comparator.comparingLong(ContainerJournal::getSequence));
+        int replayed = 0;
+        for (File file : files) {
+            SegmentStorage journal = new SegmentStorage(file, Long.MAX_VALUE, false);
+            try {
+                for (String name : journal.list()) {
+                    byte[] bytes;
+                    try (InputStream inputStream = journal.read(name)) {
+                        if (inputStream == null) {
+                            continue;
+                        }
+                        bytes = inputStream.readAllBytes();
+                    }
+                    if (bytes.length == 0) {
+                        storage.delete(name);
+                    } else {
+                        storage.write(name, outputStream -> outputStream.write(bytes));
+                    }
+                    replayed++;
+                }
+            } finally {
+                journal.close();
+            }
+        }
+        storage.flush();
+        for (File file : files) {
+            if (!file.delete()) {
+                throw new IOException("Failed to delete journal file: " + file.getAbsolutePath());
+            }
+        }
+        this.sequence = getSequence(files[files.length - 1]) + 1;
+        return replayed;
+    }
+
+    private static long getSequence(@NotNull File file) {
+        String name = file.getName();
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.marcusslover.plus.lib.container.io;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream that counts the bytes read from the wrapped stream.
+ */
+public class CountingInputStream extends FilterInputStream {
+    private long count;
+    private long mark;
+
+    /**
+     * Wraps the stream.
+     *
+     * @param in The wrapped stream.
+     */
+    public CountingInputStream(@NotNull InputStream in) {
+        super(in);
+    }
+
+    /**
+     * Gets the amount of bytes read so far.
+     *
+     * @return The amount of bytes.
+     */
+    public long getCount() {
+        return this.count;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int read = this.in.read();
+        if (read != -1) {
+            this.count++;
+        }
+        return read;
+    }
+
+    @Override
+    public int read(byte @NotNull [] b, int off, int len) throws IOException {
+        int read = this.in.read(b, off, len);
+        if (read != -1) {
+            this.count += read;
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = this.in.skip(n);
+        this.count += skipped;
+        return skipped;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+        this.in.mark(readlimit);
+        this.mark = this.count;
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        this.in.reset();
+        this.count = this.mark;
+    }
+}
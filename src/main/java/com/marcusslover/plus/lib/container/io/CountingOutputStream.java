@@ -0,0 +1,45 @@
+package com.marcusslover.plus.lib.container.io;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream that counts the bytes written to the wrapped stream.
+ */
+public class CountingOutputStream extends FilterOutputStream {
+    private long count;
+
+    /**
+     * Wraps the stream.
+     *
+     * @param out The wrapped stream.
+     */
+    public CountingOutputStream(@NotNull OutputStream out) {
+        super(out);
+    }
+
+    /**
+     * Gets the amount of bytes written so far.
+     *
+     * @return The amount of bytes.
+     */
+    public long getCount() {
+        return this.count;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        this.out.write(b);
+        this.count++;
+    }
+
+    @Override
+    public void write(byte @NotNull [] b, int off, int len) throws IOException {
+        /*FilterOutputStream would write the bytes one by one*/
+        this.out.write(b, off, len);
+        this.count += len;
+    }
+}
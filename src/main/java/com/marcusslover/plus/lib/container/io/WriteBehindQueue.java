@@ -0,0 +1,253 @@
+package com.marcusslover.plus.lib.container.io;
+
+import org.bukkit.Bukkit;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+
+/**
+ * Queue of pending writes used by containers in write-behind mode
+ * and by their async functions.
+ * <p>
+ * Every key holds at most one pending value, so repeated updates
+ * of the same key are coalesced into a single write.
+ * Pending values are written in batches on the given executor.
+ * </p>
+ * <p>
+ * Values are written on another thread, so they must not change once they are queued.
+ * Containers queue the encoded bytes of their objects, encoded on the calling thread.
+ * A value that fails to be written is retried with the next batches, the other keys are written
+ * in the meantime. After {@link #MAX_ATTEMPTS} failed attempts it is dropped
+ * and its future is completed exceptionally.
+ * </p>
+ *
+ * @param <K> Key type.
+ * @param <V> Value type.
+ */
+public class WriteBehindQueue<K, V> {
+    /*Amount of attempts to write a value before it is dropped*/
+    public static final int MAX_ATTEMPTS = 3;
+    /*Minimal delay before retrying after a failed write*/
+    private static final long RETRY_DELAY = 1000L;
+
+    private final @NotNull Map<K, Pending<V>> pending = new ConcurrentHashMap<>();
+    private final @NotNull AtomicBoolean scheduled = new AtomicBoolean(false);
+    private final @NotNull Object writeLock = new Object();
+    private final @NotNull BiConsumer<K, V> writer;
+    private final @NotNull ScheduledExecutorService executor;
+    private final long delay;
+    private final int batchSize;
+
+    /**
+     * Creates a new write-behind queue.
+     *
+     * @param writer    Function that writes the value, a null value means deletion.
+     * @param executor  Executor that performs the writes.
+     * @param delay     Delay in milliseconds before the pending writes are flushed.
+     * @param batchSize Maximum amount of writes per batch.
+     */
+    public WriteBehindQueue(@NotNull BiConsumer<K, V> writer, @NotNull ScheduledExecutorService executor, long delay, int batchSize) {
+        this.writer = writer;
+        this.executor = executor;
+        this.delay = Math.max(0L, delay);
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Marks the key as pending with the given value.
+     * <p>
+     * If the key is already pending, its value is replaced.
+     * </p>
+     *
+     * @param key   Key of the value.
+     * @param value Value to write, null to delete.
+     * @return Future completed once the value, or a newer value of the same key, is written.
+     */
+    public @NotNull CompletableFuture<Void> enqueue(@NotNull K key, @Nullable V value) {
+        Pending<V> write = new Pending<>(value);
+        Pending<V> replaced = this.pending.put(key, write);
+        if (replaced != null) {
+            /*The replaced value will never be written on its own*/
+            write.future.whenComplete((unused, throwable) -> {
+                if (throwable == null) {
+                    replaced.future.complete(null);
+                } else {
+                    replaced.future.completeExceptionally(throwable);
+                }
+            });
+        }
+        this.schedule(this.delay);
+        return write.future;
+    }
+
+    /**
+     * Retrieves the pending write of the given key.
+     *
+     * @param key Key of the value.
+     * @return The pending write or null if the key is not pending.
+     */
+    public @Nullable Pending<V> peek(@NotNull K key) {
+        return this.pending.get(key);
+    }
+
+    /**
+     * Writes the key right away on the calling thread, replacing its pending value.
+     * <p>
+     * The write waits for the batch that is currently being written, so a stale pending value
+     * never overwrites it. If the write fails, the pending value is kept.
+     * </p>
+     *
+     * @param key   Key of the value.
+     * @param write Function performing the write.
+     */
+    public void writeThrough(@NotNull K key, @NotNull Runnable write) {
+        synchronized (this.writeLock) {
+            Pending<V> replaced = this.pending.remove(key);
+            try {
+                write.run();
+            } catch (RuntimeException e) {
+                if (replaced != null) {
+                    this.pending.putIfAbsent(key, replaced);
+                }
+                throw e;
+            }
+            if (replaced != null) {
+                replaced.future.complete(null);
+            }
+        }
+    }
+
+    /**
+     * Checks if there are any pending writes.
+     *
+     * @return True if nothing is pending.
+     */
+    public boolean isEmpty() {
+        return this.pending.isEmpty();
+    }
+
+    /**
+     * Gets the amount of pending writes.
+     *
+     * @return The amount of pending writes.
+     */
+    public int size() {
+        return this.pending.size();
+    }
+
+    /**
+     * Writes all the pending values on the calling thread.
+     * <p>
+     * This function blocks until every pending value is written.
+     * </p>
+     *
+     * @throws RuntimeException The first failure, if any value could not be written.
+     *                          The other values are written regardless.
+     */
+    public void flush() {
+        RuntimeException failure;
+        synchronized (this.writeLock) {
+            failure = this.write(Integer.MAX_VALUE);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void schedule(long delay) {
+        if (!this.scheduled.compareAndSet(false, true)) {
+            return;
+        }
+        this.executor.schedule(this::drain, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void drain() {
+        RuntimeException failure;
+        synchronized (this.writeLock) {
+            failure = this.write(this.batchSize);
+        }
+        this.scheduled.set(false);
+        if (!this.pending.isEmpty()) {
+            /*Continue right away with the next batch, back off after a failure*/
+            this.schedule(failure != null ? Math.max(RETRY_DELAY, this.delay) : 0L);
+        }
+    }
+
+    /**
+     * Writes up to the given amount of pending values.
+     * <p>
+     * Failures are handled per key, they never stop the other keys from being written.
+     * </p>
+     *
+     * @param limit Maximum amount of values to write.
+     * @return The first failure or null if every value was written.
+     */
+    private @Nullable RuntimeException write(int limit) {
+        Iterator<Map.Entry<K, Pending<V>>> iterator = this.pending.entrySet().iterator();
+        RuntimeException failure = null;
+        int attempted = 0;
+        while (attempted < limit && iterator.hasNext()) {
+            Map.Entry<K, Pending<V>> entry = iterator.next();
+            K key = entry.getKey();
+            Pending<V> write = entry.getValue();
+            attempted++;
+            try {
+                this.writer.accept(key, write.value());
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+                if (++write.attempts < MAX_ATTEMPTS) {
+                    Bukkit.getLogger().warning("Failed to write pending container data of " + key + ", retrying: " + e.getMessage());
+                    continue;
+                }
+                Bukkit.getLogger().severe("Failed to write pending container data of " + key + " " + MAX_ATTEMPTS + " times, dropping it: " + e.getMessage());
+                e.printStackTrace();
+                this.pending.remove(key, write);
+                write.future.completeExceptionally(e);
+                continue;
+            }
+            /*Only remove the entry if it wasn't replaced in the meantime*/
+            this.pending.remove(key, write);
+            write.future.complete(null);
+        }
+        return failure;
+    }
+
+    /**
+     * Pending write of a single key.
+     * <p>
+     * Pending writes are compared by identity on purpose,
+     * so that a newer write of an equal value is never dropped.
+     * </p>
+     *
+     * @param <V> Value type.
+     */
+    public static final class Pending<V> {
+        private final @Nullable V value;
+        private final @NotNull CompletableFuture<Void> future = new CompletableFuture<>();
+        /*Failed attempts, only accessed while writing*/
+        private int attempts;
+
+        private Pending(@Nullable V value) {
+            this.value = value;
+        }
+
+        /**
+         * Gets the pending value.
+         *
+         * @return The value or null if the key is pending deletion.
+         */
+        public @Nullable V value() {
+            return this.value;
+        }
+    }
+}
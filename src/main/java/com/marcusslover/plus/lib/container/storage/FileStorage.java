@@ -0,0 +1,88 @@
+package com.marcusslover.plus.lib.container.storage;
+
+import com.marcusslover.plus.lib.file.FileUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Storage that keeps every entry in its own file.
+ * <p>
+ * This is the default layout of containers, files are written atomically
+ * with {@link FileUtils#writeAtomically(File, FileUtils.StreamWriter)}.
+ * </p>
+ */
+public class FileStorage implements IContainerStorage {
+    private final @NotNull File folder;
+    private final @NotNull String extension;
+
+    /**
+     * Creates a new file storage.
+     *
+     * @param folder    Folder of the files.
+     * @param extension Extension of the files, including the dot.
+     */
+    public FileStorage(@NotNull File folder, @NotNull String extension) {
+        this.folder = folder;
+        this.extension = extension;
+    }
+
+    /**
+     * Gets the file of the entry.
+     *
+     * @param name Name of the entry.
+     * @return The file.
+     */
+    public @NotNull File getFile(@NotNull String name) {
+        return new File(this.folder, name + this.extension);
+    }
+
+    @Override
+    public @Nullable InputStream read(@NotNull String name) throws IOException {
+        File file = this.getFile(name);
+        if (!file.exists()) {
+            return null;
+        }
+        return new BufferedInputStream(new FileInputStream(file));
+    }
+
+    @Override
+    public void write(@NotNull String name, @NotNull FileUtils.StreamWriter writer) throws IOException {
+        FileUtils.writeAtomically(this.getFile(name), writer);
+    }
+
+    @Override
+    public boolean delete(@NotNull String name) throws IOException {
+        File file = this.getFile(name);
+        if (!file.exists()) {
+            return false;
+        }
+        if (!file.delete()) {
+            throw new IOException("Failed to delete file: " + file.getAbsolutePath());
+        }
+        return true;
+    }
+
+    @Override
+    public @NotNull Collection<String> list() {
+        /*Skip anything that isn't a container file, e.g. leftover temporary files*/
+        File[] files = this.folder.listFiles((dir, name) -> name.endsWith(this.extension) && !name.startsWith("."));
+        if (files == null) {
+            return List.of();
+        }
+        List<String> names = new ArrayList<>(files.length);
+        for (File file : files) {
+            String fileName = file.getName();
+            names.add(fileName.substring(0, fileName.length() - this.extension.length()));
+        }
+        return names;
+    }
+}
@@ -0,0 +1,72 @@
+package com.marcusslover.plus.lib.container.storage;
+
+import com.marcusslover.plus.lib.file.FileUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+
+/**
+ * Represents the place where a container keeps its encoded entries.
+ * <p>
+ * Entries are identified by their name, which is the transformed key of the container.
+ * Default implementations are {@link FileStorage}, {@link SegmentStorage} and {@link SqliteStorage}.
+ * </p>
+ */
+public interface IContainerStorage {
+
+    /**
+     * Opens the entry for reading.
+     *
+     * @param name Name of the entry.
+     * @return Stream of the entry or null if the entry doesn't exist.
+     * @throws IOException If the entry could not be read.
+     */
+    @Nullable InputStream read(@NotNull String name) throws IOException;
+
+    /**
+     * Writes the entry, replacing the previous content.
+     *
+     * @param name   Name of the entry.
+     * @param writer Function writing the content.
+     * @throws IOException If the entry could not be written.
+     */
+    void write(@NotNull String name, @NotNull FileUtils.StreamWriter writer) throws IOException;
+
+    /**
+     * Deletes the entry.
+     *
+     * @param name Name of the entry.
+     * @return True if the entry was deleted, false if it didn't exist.
+     * @throws IOException If the entry could not be deleted.
+     */
+    boolean delete(@NotNull String name) throws IOException;
+
+    /**
+     * Lists the names of all entries.
+     *
+     * @return The names of all entries.
+     * @throws IOException If the entries could not be listed.
+     */
+    @NotNull Collection<String> list() throws IOException;
+
+    /**
+     * Makes sure all the written entries are on the disk.
+     *
+     * @throws IOException If the storage could not be synced.
+     */
+    default void flush() throws IOException {
+        // nothing is buffered by default
+    }
+
+    /**
+     * Releases the resources held by the storage.
+     *
+     * @throws IOException If the storage could not be closed.
+     */
+    default void close() throws IOException {
+        // nothing to release by default
+    }
+}
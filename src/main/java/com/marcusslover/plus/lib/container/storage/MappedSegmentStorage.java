@@ -0,0 +1,303 @@
+package com.marcusslover.plus.lib.container.storage;
+
+import com.marcusslover.plus.lib.file.FileUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Read-only storage that memory-maps a segment file written by {@link SegmentStorage}.
+ * <p>
+ * The file is mapped once when the storage is opened and only the offsets of the entries
+ * are kept on the heap, the values are read straight from the mapped memory
+ * and the operating system decides which pages stay resident.
+ * A torn record at the end of the file is ignored, the file itself is never modified.
+ * </p>
+ * <p>
+ * A single mapping can't be larger than 2 GiB, so larger files are mapped in chunks.
+ * Chunks start at record boundaries, every record lies within a single chunk.
+ * </p>
+ */
+public class MappedSegmentStorage implements IContainerStorage {
+    /*Default maximum size of a single mapping, the most a buffer can address*/
+    public static final int DEFAULT_CHUNK_SIZE = Integer.MAX_VALUE;
+
+    private final @NotNull File file;
+    private final @NotNull MappedByteBuffer @NotNull [] chunks;
+    /*Chunk index in the upper and offset of the value length in the lower 32 bits, the value follows right after it*/
+    private final @NotNull Map<String, Long> index = new HashMap<>();
+
+    /**
+     * Maps the segment file.
+     *
+     * @param file The segment file.
+     * @throws RuntimeException If the file doesn't exist or could not be mapped.
+     */
+    public MappedSegmentStorage(@NotNull File file) {
+        this(file, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Maps the segment file in chunks of the given size.
+     * <p>
+     * A chunk holding a record larger than the chunk size is enlarged to fit it.
+     * </p>
+     *
+     * @param file      The segment file.
+     * @param chunkSize Maximum size of a single mapping in bytes.
+     * @throws RuntimeException If the file doesn't exist or could not be mapped.
+     */
+    public MappedSegmentStorage(@NotNull File file, int chunkSize) {
+        this.file = file;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            /*The mappings stay valid after the channel is closed*/
+            this.chunks = this.scan(channel, Math.max(SegmentStorage.MAGIC.length, chunkSize));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Gets the segment file.
+     *
+     * @return The segment file.
+     */
+    public @NotNull File getFile() {
+        return this.file;
+    }
+
+    /**
+     * Checks if the entry exists without reading it.
+     *
+     * @param name Name of the entry.
+     * @return True if the entry exists.
+     */
+    public boolean contains(@NotNull String name) {
+        return this.index.containsKey(name);
+    }
+
+    /**
+     * Gets the amount of entries.
+     *
+     * @return The amount of entries.
+     */
+    public int size() {
+        return this.index.size();
+    }
+
+    /**
+     * Gets the amount of chunks the file is mapped in.
+     *
+     * @return The amount of chunks.
+     */
+    public int getChunkCount() {
+        return this.chunks.length;
+    }
+
+    @Override
+    public @Nullable InputStream read(@NotNull String name) {
+        Long location = this.index.get(name);
+        if (location == null) {
+            return null;
+        }
+        MappedByteBuffer chunk = this.chunks[(int) (location >>> 32)];
+        int offset = (int) (location & 0xFFFFFFFFL);
+        int length = chunk.getInt(offset);
+        /*Every reader gets its own view of the shared mapping*/
+        ByteBuffer value = chunk.duplicate().position(offset + 4).limit(offset + 4 + length).slice();
+        return new BufferInputStream(value);
+    }
+
+    @Override
+    public void write(@NotNull String name, @NotNull FileUtils.StreamWriter writer) {
+        throw new UnsupportedOperationException("Mapped segment storage is read-only.");
+    }
+
+    @Override
+    public boolean delete(@NotNull String name) {
+        throw new UnsupportedOperationException("Mapped segment storage is read-only.");
+    }
+
+    @Override
+    public @NotNull Collection<String> list() {
+        return new ArrayList<>(this.index.keySet());
+    }
+
+    /**
+     * Maps the file and builds the index from its records.
+     *
+     * @param channel   Channel of the file.
+     * @param chunkSize Maximum size of a single mapping.
+     * @return The mapped chunks.
+     * @throws IOException If the file is not a segment file or could not be mapped.
+     */
+    private @NotNull MappedByteBuffer @NotNull [] scan(@NotNull FileChannel channel, int chunkSize) throws IOException {
+        long size = channel.size();
+        if (size < SegmentStorage.MAGIC.length) {
+            throw new IOException("Not a segment file: " + this.file.getAbsolutePath());
+        }
+        Chunks chunks = new Chunks(channel, size, chunkSize);
+        ByteBuffer buffer = chunks.cover(0L, SegmentStorage.MAGIC.length);
+        for (int i = 0; i < SegmentStorage.MAGIC.length; i++) {
+            if (buffer.get(i) != SegmentStorage.MAGIC[i]) {
+                throw new IOException("Not a segment file: " + this.file.getAbsolutePath());
+            }
+        }
+        CRC32 crc = new CRC32();
+        long position = SegmentStorage.MAGIC.length;
+        while (size - position >= SegmentStorage.RECORD_OVERHEAD) {
+            long remaining = size - position;
+            buffer = chunks.cover(position, 1 + 4);
+            int start = chunks.offset(position);
+            byte type = buffer.get(start);
+            int nameLength = buffer.getInt(start + 1);
+            if ((type != SegmentStorage.PUT && type != SegmentStorage.DELETE) || nameLength < 0
+                    || nameLength > remaining - SegmentStorage.RECORD_OVERHEAD) {
+                break;
+            }
+            buffer = chunks.cover(position, 1 + 4 + nameLength + 4);
+            start = chunks.offset(position);
+            int lengthOffset = start + 1 + 4 + nameLength;
+            int valueLength = buffer.getInt(lengthOffset);
+            if (valueLength < 0 || valueLength > remaining - SegmentStorage.RECORD_OVERHEAD - nameLength) {
+                break;
+            }
+            int length = SegmentStorage.RECORD_OVERHEAD + nameLength + valueLength;
+            /*The whole record, so that its value can be read from a single chunk*/
+            buffer = chunks.cover(position, length);
+            start = chunks.offset(position);
+            lengthOffset = start + 1 + 4 + nameLength;
+            int checksumOffset = lengthOffset + 4 + valueLength;
+            crc.reset();
+            crc.update(buffer.duplicate().position(start).limit(checksumOffset));
+            if ((int) crc.getValue() != buffer.getInt(checksumOffset)) {
+                break;
+            }
+
+            byte[] name = new byte[nameLength];
+            buffer.get(start + 1 + 4, name);
+            String key = new String(name, StandardCharsets.UTF_8);
+            if (type == SegmentStorage.PUT) {
+                this.index.put(key, ((long) chunks.current() << 32) | lengthOffset);
+            } else {
+                this.index.remove(key);
+            }
+            position += length;
+        }
+        return chunks.toArray();
+    }
+
+    /**
+     * Chunks mapped while the file is scanned.
+     */
+    private static final class Chunks {
+        private final @NotNull FileChannel channel;
+        private final long size;
+        private final int chunkSize;
+        private final @NotNull List<MappedByteBuffer> mapped = new ArrayList<>();
+        private long start;
+
+        private Chunks(@NotNull FileChannel channel, long size, int chunkSize) {
+            this.channel = channel;
+            this.size = size;
+            this.chunkSize = chunkSize;
+        }
+
+        /**
+         * Makes sure the current chunk covers the given range, a new chunk starting at the range is mapped otherwise.
+         * <p>
+         * The range must be within the file.
+         * </p>
+         *
+         * @param position Position of the range in the file.
+         * @param length   Length of the range.
+         * @return The current chunk.
+         * @throws IOException If the chunk could not be mapped.
+         */
+        private @NotNull MappedByteBuffer cover(long position, int length) throws IOException {
+            if (!this.mapped.isEmpty()) {
+                MappedByteBuffer chunk = this.mapped.get(this.mapped.size() - 1);
+                if (position + length <= this.start + chunk.limit()) {
+                    return chunk;
+                }
+            }
+            long mapSize = Math.min(this.size - position, Math.max(this.chunkSize, length));
+            MappedByteBuffer chunk = this.channel.map(FileChannel.MapMode.READ_ONLY, position, mapSize);
+            if (!this.mapped.isEmpty() && this.start == position) {
+                /*Nothing of the current chunk is indexed yet, it was just too small*/
+                this.mapped.set(this.mapped.size() - 1, chunk);
+            } else {
+                this.mapped.add(chunk);
+            }
+            this.start = position;
+            return chunk;
+        }
+
+        private int offset(long position) {
+            return (int) (position - this.start);
+        }
+
+        private int current() {
+            return this.mapped.size() - 1;
+        }
+
+        private @NotNull MappedByteBuffer @NotNull [] toArray() {
+            return this.mapped.toArray(new MappedByteBuffer[0]);
+        }
+    }
+
+    /**
+     * Stream reading the remaining bytes of a buffer.
+     */
+    private static final class BufferInputStream extends InputStream {
+        private final @NotNull ByteBuffer buffer;
+
+        private BufferInputStream(@NotNull ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return this.buffer.hasRemaining() ? this.buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte @NotNull [] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!this.buffer.hasRemaining()) {
+                return -1;
+            }
+            int read = Math.min(length, this.buffer.remaining());
+            this.buffer.get(bytes, offset, read);
+            return read;
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.max(0L, Math.min(n, this.buffer.remaining()));
+            this.buffer.position(this.buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return this.buffer.remaining();
+        }
+    }
+}
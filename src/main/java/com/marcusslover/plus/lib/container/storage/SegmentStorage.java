@@ -0,0 +1,489 @@
+package com.marcusslover.plus.lib.container.storage;
+
+import com.marcusslover.plus.lib.common.ReadWriteLock;
+import com.marcusslover.plus.lib.file.FileUtils;
+import org.bukkit.Bukkit;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Storage that packs all entries into a single append-only segment file.
+ * <p>
+ * Every write appends a record to the end of the file and every deletion appends a tombstone,
+ * an in-memory index maps the names to the offsets of their latest records.
+ * The index is rebuilt by scanning the file when the storage is opened,
+ * a torn record at the end of the file (e.g. after a crash) is cut off.
+ * </p>
+ * <p>
+ * Overwritten records stay in the file until it is compacted. The file is compacted
+ * automatically once the dead records take more space than the live ones and more than
+ * the compaction threshold, or manually with {@link #compact()}.
+ * By default, every write is synced to the disk before it returns, so the storage is as durable
+ * as the per-file layout. Writers that append at the same time share a single sync (group commit).
+ * Without synced writes, records are only synced on {@link #flush()}, {@link #compact()} and {@link #close()}.
+ * </p>
+ * <p>
+ * To use it in a container, override {@code createStorage()}:
+ * <pre>{@code
+ * @Override
+ * protected @NotNull IContainerStorage createStorage() {
+ *     return new SegmentStorage(new File(this.getParentFolder(), SegmentStorage.DEFAULT_FILE_NAME));
+ * }
+ * }</pre>
+ * </p>
+ */
+public class SegmentStorage implements IContainerStorage {
+    /*File header, "PLS" followed by the format version*/
+    static final byte[] MAGIC = {'P', 'L', 'S', 1};
+    /*Record types*/
+    static final byte PUT = 1;
+    static final byte DELETE = 2;
+    /*Type, name length, value length and checksum*/
+    static final int RECORD_OVERHEAD = 1 + 4 + 4 + 4;
+    /*Default name of the segment file inside the container folder*/
+    public static final String DEFAULT_FILE_NAME = "data.seg";
+    /*Default amount of dead bytes that triggers a compaction*/
+    public static final long DEFAULT_COMPACTION_THRESHOLD = 4L * 1024L * 1024L;
+
+    private final @NotNull ReadWriteLock lock = new ReadWriteLock();
+    private final @NotNull Map<String, Record> index = new HashMap<>();
+    private final @NotNull File file;
+    private final long compactionThreshold;
+    private final boolean syncWrites;
+    /*Only one sync at a time, the writers waiting for it are covered by the next one*/
+    private final @NotNull Object syncLock = new Object();
+    private @NotNull FileChannel channel;
+    private long size;
+    private long liveBytes;
+    /*Size of the file known to be on the disk*/
+    private volatile long syncedSize;
+
+    /**
+     * Opens the segment file with the default compaction threshold.
+     *
+     * @param file The segment file, created if it doesn't exist.
+     * @throws RuntimeException If the file could not be opened.
+     */
+    public SegmentStorage(@NotNull File file) {
+        this(file, DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    /**
+     * Opens the segment file, every write is synced to the disk.
+     *
+     * @param file                The segment file, created if it doesn't exist.
+     * @param compactionThreshold Minimal amount of dead bytes before the file is compacted automatically.
+     * @throws RuntimeException If the file could not be opened.
+     */
+    public SegmentStorage(@NotNull File file, long compactionThreshold) {
+        this(file, compactionThreshold, true);
+    }
+
+    /**
+     * Opens the segment file.
+     *
+     * @param file                The segment file, created if it doesn't exist.
+     * @param compactionThreshold Minimal amount of dead bytes before the file is compacted automatically.
+     * @param syncWrites          True to sync every write to the disk, false to only sync on {@link #flush()}.
+     * @throws RuntimeException If the file could not be opened.
+     */
+    public SegmentStorage(@NotNull File file, long compactionThreshold, boolean syncWrites) {
+        this.file = file;
+        this.compactionThreshold = Math.max(0L, compactionThreshold);
+        this.syncWrites = syncWrites;
+        try {
+            this.channel = this.open();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Gets the segment file.
+     *
+     * @return The segment file.
+     */
+    public @NotNull File getFile() {
+        return this.file;
+    }
+
+    /**
+     * Gets the size of the segment file.
+     *
+     * @return Size in bytes, including the dead records.
+     */
+    public long getSize() {
+        this.lock.readLock();
+        try {
+            return this.size;
+        } finally {
+            this.lock.readUnlock();
+        }
+    }
+
+    /**
+     * Gets the amount of space taken by overwritten and deleted records.
+     *
+     * @return Size of the dead records in bytes.
+     */
+    public long getDeadBytes() {
+        this.lock.readLock();
+        try {
+            return this.size - MAGIC.length - this.liveBytes;
+        } finally {
+            this.lock.readUnlock();
+        }
+    }
+
+    @Override
+    public @Nullable InputStream read(@NotNull String name) throws IOException {
+        this.lock.readLock();
+        try {
+            Record record = this.index.get(name);
+            if (record == null) {
+                return null;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(record.valueLength);
+            long position = record.valueOffset;
+            while (buffer.hasRemaining()) {
+                int read = this.channel.read(buffer, position);
+                if (read < 0) {
+                    throw new EOFException("Unexpected end of segment file: " + this.file.getAbsolutePath());
+                }
+                position += read;
+            }
+            return new ByteArrayInputStream(buffer.array());
+        } finally {
+            this.lock.readUnlock();
+        }
+    }
+
+    @Override
+    public void write(@NotNull String name, @NotNull FileUtils.StreamWriter writer) throws IOException {
+        /*Encode outside of the lock, only the append is exclusive*/
+        ByteArrayOutputStream value = new ByteArrayOutputStream();
+        writer.write(value);
+        this.append(PUT, name, value.toByteArray());
+    }
+
+    @Override
+    public boolean delete(@NotNull String name) throws IOException {
+        return this.append(DELETE, name, new byte[0]);
+    }
+
+    @Override
+    public @NotNull Collection<String> list() {
+        this.lock.readLock();
+        try {
+            return new ArrayList<>(this.index.keySet());
+        } finally {
+            this.lock.readUnlock();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        this.lock.readLock();
+        try {
+            this.channel.force(false);
+        } finally {
+            this.lock.readUnlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.lock.writeLock();
+        try {
+            if (this.channel.isOpen()) {
+                this.channel.force(false);
+                this.channel.close();
+            }
+        } finally {
+            this.lock.writeUnlock();
+        }
+    }
+
+    /**
+     * Rewrites the segment file with only the live records.
+     * <p>
+     * The records are copied to a temporary file which then atomically replaces the segment file.
+     * Reads and writes are blocked while the file is being compacted.
+     * </p>
+     *
+     * @throws IOException If the file could not be compacted.
+     */
+    public void compact() throws IOException {
+        this.lock.writeLock();
+        try {
+            File temp = new File(this.file.getParentFile(), "." + this.file.getName() + ".compact");
+            Map<String, Record> compacted = new HashMap<>(this.index.size());
+            long position = MAGIC.length;
+            try (FileChannel target = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                writeFully(target, ByteBuffer.wrap(MAGIC), 0L);
+                for (Map.Entry<String, Record> entry : this.index.entrySet()) {
+                    Record record = entry.getValue();
+                    /*Records are copied as they are, including their checksum*/
+                    long copied = 0;
+                    while (copied < record.length) {
+                        copied += this.channel.transferTo(record.offset + copied, record.length - copied, target.position(position + copied));
+                    }
+                    compacted.put(entry.getKey(), new Record(position, record.length, position + (record.valueOffset - record.offset), record.valueLength));
+                    position += record.length;
+                }
+                target.force(true);
+            }
+            this.channel.close();
+            try {
+                Files.move(temp.toPath(), this.file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp.toPath());
+                this.channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+            this.index.clear();
+            this.index.putAll(compacted);
+            this.size = position;
+            this.syncedSize = position;
+        } finally {
+            this.lock.writeUnlock();
+        }
+    }
+
+    /**
+     * Appends a record and updates the index.
+     * <p>
+     * The file is synced and compacted only once the lock is released,
+     * the sync waits for other writers and must never be entered while holding it.
+     * </p>
+     *
+     * @param type  Type of the record.
+     * @param name  Name of the entry.
+     * @param value The value, empty for deletions.
+     * @return False if it is a deletion of an entry that doesn't exist, nothing is appended then.
+     * @throws IOException If the record could not be written or synced.
+     */
+    private boolean append(byte type, @NotNull String name, byte @NotNull [] value) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        int length = RECORD_OVERHEAD + nameBytes.length + value.length;
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.put(type).putInt(nameBytes.length).put(nameBytes).putInt(value.length).put(value);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, length - 4);
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+
+        boolean compact;
+        long end;
+        this.lock.writeLock();
+        try {
+            if (type == DELETE && !this.index.containsKey(name)) {
+                return false;
+            }
+            long offset = this.size;
+            writeFully(this.channel, buffer, offset);
+            this.size += length;
+            end = this.size;
+            Record previous;
+            if (type == PUT) {
+                Record record = new Record(offset, length, offset + length - 4 - value.length, value.length);
+                previous = this.index.put(name, record);
+                this.liveBytes += length;
+            } else {
+                previous = this.index.remove(name);
+            }
+            if (previous != null) {
+                this.liveBytes -= previous.length;
+            }
+            long dead = this.size - MAGIC.length - this.liveBytes;
+            compact = dead > this.compactionThreshold && dead > this.liveBytes;
+        } finally {
+            this.lock.writeUnlock();
+        }
+        if (this.syncWrites) {
+            this.sync(end);
+        }
+        if (compact) {
+            this.compact();
+        }
+        return true;
+    }
+
+    /**
+     * Syncs the file to the disk, unless it is already synced up to the given position.
+     * <p>
+     * The sync runs outside the lock, so other writers keep appending
+     * and are all covered by the next sync.
+     * </p>
+     *
+     * @param end Position the file must be synced to.
+     * @throws IOException If the file could not be synced.
+     */
+    private void sync(long end) throws IOException {
+        if (this.syncedSize >= end) {
+            return;
+        }
+        synchronized (this.syncLock) {
+            if (this.syncedSize >= end) {
+                return;
+            }
+            FileChannel channel;
+            long size;
+            this.lock.readLock();
+            try {
+                channel = this.channel;
+                size = this.size;
+            } finally {
+                this.lock.readUnlock();
+            }
+            try {
+                channel.force(false);
+            } catch (ClosedChannelException e) {
+                /*Replaced by a compaction, which synced the live records, or closed, which synced everything*/
+                return;
+            }
+            this.lock.readLock();
+            try {
+                if (this.channel == channel) {
+                    this.syncedSize = Math.max(this.syncedSize, size);
+                }
+            } finally {
+                this.lock.readUnlock();
+            }
+        }
+    }
+
+    private @NotNull FileChannel open() throws IOException {
+        File parent = this.file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Could not create folder: " + parent.getAbsolutePath());
+        }
+        FileChannel channel = FileChannel.open(this.file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                writeFully(channel, ByteBuffer.wrap(MAGIC), 0L);
+                channel.force(true);
+                this.size = MAGIC.length;
+                return channel;
+            }
+            long valid = this.scan();
+            if (valid < channel.size()) {
+                /*The last record was not written completely, drop it*/
+                Bukkit.getLogger().warning("Truncating torn record at offset %d of segment file %s.".formatted(valid, this.file.getAbsolutePath()));
+                channel.truncate(valid);
+                channel.force(true);
+            }
+            this.size = valid;
+            return channel;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Rebuilds the index from the records of the file.
+     *
+     * @return Position right after the last valid record.
+     * @throws IOException If the file is not a segment file.
+     */
+    private long scan() throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(this.file), 64 * 1024))) {
+            byte[] magic = new byte[MAGIC.length];
+            input.readFully(magic);
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (magic[i] != MAGIC[i]) {
+                    throw new IOException("Not a segment file: " + this.file.getAbsolutePath());
+                }
+            }
+            long position = MAGIC.length;
+            long remaining = this.file.length() - position;
+            CRC32 crc = new CRC32();
+            while (remaining >= RECORD_OVERHEAD) {
+                byte type = input.readByte();
+                int nameLength = input.readInt();
+                if ((type != PUT && type != DELETE) || nameLength < 0 || nameLength > remaining - RECORD_OVERHEAD) {
+                    break;
+                }
+                byte[] name = new byte[nameLength];
+                input.readFully(name);
+                int valueLength = input.readInt();
+                if (valueLength < 0 || valueLength > remaining - RECORD_OVERHEAD - nameLength) {
+                    break;
+                }
+                byte[] value = new byte[valueLength];
+                input.readFully(value);
+                int checksum = input.readInt();
+
+                crc.reset();
+                crc.update(type);
+                crc.update(ByteBuffer.allocate(4).putInt(nameLength).array());
+                crc.update(name);
+                crc.update(ByteBuffer.allocate(4).putInt(valueLength).array());
+                crc.update(value);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+
+                int length = RECORD_OVERHEAD + nameLength + valueLength;
+                String key = new String(name, StandardCharsets.UTF_8);
+                Record previous;
+                if (type == PUT) {
+                    previous = this.index.put(key, new Record(position, length, position + length - 4 - valueLength, valueLength));
+                    this.liveBytes += length;
+                } else {
+                    previous = this.index.remove(key);
+                }
+                if (previous != null) {
+                    this.liveBytes -= previous.length;
+                }
+                position += length;
+                remaining -= length;
+            }
+            return position;
+        } catch (EOFException e) {
+            throw new IOException("Not a segment file: " + this.file.getAbsolutePath(), e);
+        }
+    }
+
+    private static void writeFully(@NotNull FileChannel channel, @NotNull ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Location of the latest record of an entry.
+     *
+     * @param offset      Offset of the record.
+     * @param length      Length of the whole record.
+     * @param valueOffset Offset of the value.
+     * @param valueLength Length of the value.
+     */
+    private record Record(long offset, int length, long valueOffset, int valueLength) {
+    }
+}
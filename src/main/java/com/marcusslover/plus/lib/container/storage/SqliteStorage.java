@@ -0,0 +1,383 @@
+package com.marcusslover.plus.lib.container.storage;
+
+import com.marcusslover.plus.lib.file.FileUtils;
+import org.bukkit.Bukkit;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Storage that keeps all entries in a table of an embedded SQLite database file.
+ * <p>
+ * Writes and deletions are buffered in memory and committed by a single writer thread,
+ * all the entries written within {@link #getCommitDelay()} milliseconds share one transaction
+ * and one batch of prepared statements. Saving thousands of objects therefore costs
+ * a single commit instead of thousands of file rewrites. Buffered entries are visible
+ * to reads right away and are committed at the latest on {@link #flush()}.
+ * </p>
+ * <p>
+ * The SQLite JDBC driver is bundled with the server, no extra dependency is needed.
+ * The database runs in WAL mode, so reads are not blocked by the commits of the writer thread.
+ * </p>
+ * <p>
+ * To use it in a container, extend {@link com.marcusslover.plus.lib.container.type.SqliteMapContainer}
+ * or override {@code createStorage()}:
+ * <pre>{@code
+ * @Override
+ * protected @NotNull IContainerStorage createStorage() {
+ *     return new SqliteStorage(new File(this.getParentFolder(), SqliteStorage.DEFAULT_FILE_NAME));
+ * }
+ * }</pre>
+ * </p>
+ */
+public class SqliteStorage implements IContainerStorage {
+    /*Default name of the database file inside the container folder*/
+    public static final String DEFAULT_FILE_NAME = "data.db";
+    /*Default time in milliseconds the writes are buffered before they are committed*/
+    public static final long DEFAULT_COMMIT_DELAY = 50L;
+    /*Buffered deletion, compared by identity*/
+    private static final byte[] DELETED = new byte[0];
+
+    private final @NotNull Object pendingLock = new Object();
+    private final @NotNull AtomicBoolean scheduled = new AtomicBoolean(false);
+    private final @NotNull File file;
+    private final long commitDelay;
+    private final @NotNull ScheduledExecutorService writer;
+    private final @NotNull Connection writeConnection;
+    private final @NotNull PreparedStatement upsertStatement;
+    private final @NotNull PreparedStatement deleteStatement;
+    /*Used by all the other threads, guarded by itself*/
+    private final @NotNull Connection readConnection;
+    private final @NotNull PreparedStatement selectStatement;
+    /*Entries that are not committed yet, DELETED means deletion*/
+    private final @NotNull Map<String, byte[]> pending = new LinkedHashMap<>();
+    private volatile @Nullable Thread writerThread;
+    private volatile boolean closed;
+
+    /**
+     * Opens the database file with the default commit delay.
+     *
+     * @param file The database file, created if it doesn't exist.
+     * @throws RuntimeException If the database could not be opened.
+     */
+    public SqliteStorage(@NotNull File file) {
+        this(file, DEFAULT_COMMIT_DELAY);
+    }
+
+    /**
+     * Opens the database file.
+     *
+     * @param file        The database file, created if it doesn't exist.
+     * @param commitDelay Time in milliseconds the writes are buffered before they are committed.
+     * @throws RuntimeException If the database could not be opened.
+     */
+    public SqliteStorage(@NotNull File file, long commitDelay) {
+        this.file = file;
+        this.commitDelay = Math.max(0L, commitDelay);
+        try {
+            String url = "jdbc:sqlite:" + file.getAbsolutePath();
+            this.writeConnection = DriverManager.getConnection(url);
+            try (Statement statement = this.writeConnection.createStatement()) {
+                statement.execute("PRAGMA journal_mode=WAL");
+                statement.execute("CREATE TABLE IF NOT EXISTS entries (name TEXT PRIMARY KEY NOT NULL, value BLOB NOT NULL)");
+            }
+            this.writeConnection.setAutoCommit(false);
+            this.upsertStatement = this.writeConnection.prepareStatement("INSERT OR REPLACE INTO entries (name, value) VALUES (?, ?)");
+            this.deleteStatement = this.writeConnection.prepareStatement("DELETE FROM entries WHERE name = ?");
+            this.readConnection = DriverManager.getConnection(url);
+            this.selectStatement = this.readConnection.prepareStatement("SELECT value FROM entries WHERE name = ?");
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+        this.writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Plus SQLite Writer (" + file.getName() + ")");
+            thread.setDaemon(true);
+            this.writerThread = thread;
+            return thread;
+        });
+    }
+
+    /**
+     * Gets the database file.
+     *
+     * @return The database file.
+     */
+    public @NotNull File getFile() {
+        return this.file;
+    }
+
+    /**
+     * Gets the time the writes are buffered before they are committed.
+     *
+     * @return The delay in milliseconds.
+     */
+    public long getCommitDelay() {
+        return this.commitDelay;
+    }
+
+    /**
+     * Gets the amount of entries that are not committed yet.
+     *
+     * @return The amount of buffered entries.
+     */
+    public int getPendingCount() {
+        synchronized (this.pendingLock) {
+            return this.pending.size();
+        }
+    }
+
+    @Override
+    public @Nullable InputStream read(@NotNull String name) throws IOException {
+        synchronized (this.pendingLock) {
+            byte[] bytes = this.pending.get(name);
+            if (bytes != null) {
+                return bytes == DELETED ? null : new ByteArrayInputStream(bytes);
+            }
+        }
+        synchronized (this.readConnection) {
+            this.ensureOpen();
+            try {
+                this.selectStatement.setString(1, name);
+                try (ResultSet resultSet = this.selectStatement.executeQuery()) {
+                    return resultSet.next() ? new ByteArrayInputStream(resultSet.getBytes(1)) : null;
+                }
+            } catch (SQLException e) {
+                throw new IOException(e);
+            }
+        }
+    }
+
+    @Override
+    public void write(@NotNull String name, @NotNull FileUtils.StreamWriter writer) throws IOException {
+        this.ensureOpen();
+        /*Encoded on the calling thread, the writer thread only runs the statements*/
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        writer.write(outputStream);
+        this.buffer(name, outputStream.toByteArray());
+    }
+
+    @Override
+    public boolean delete(@NotNull String name) throws IOException {
+        this.ensureOpen();
+        boolean existed;
+        synchronized (this.pendingLock) {
+            byte[] bytes = this.pending.get(name);
+            if (bytes != null) {
+                existed = bytes != DELETED;
+            } else {
+                existed = this.isCommitted(name);
+            }
+            if (existed) {
+                this.pending.put(name, DELETED);
+            }
+        }
+        if (existed) {
+            this.schedule();
+        }
+        return existed;
+    }
+
+    @Override
+    public @NotNull Collection<String> list() throws IOException {
+        Set<String> names = new LinkedHashSet<>();
+        synchronized (this.readConnection) {
+            this.ensureOpen();
+            try (Statement statement = this.readConnection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("SELECT name FROM entries")) {
+                while (resultSet.next()) {
+                    names.add(resultSet.getString(1));
+                }
+            } catch (SQLException e) {
+                throw new IOException(e);
+            }
+        }
+        synchronized (this.pendingLock) {
+            this.pending.forEach((name, bytes) -> {
+                if (bytes == DELETED) {
+                    names.remove(name);
+                } else {
+                    names.add(name);
+                }
+            });
+        }
+        return names;
+    }
+
+    /**
+     * Commits all the buffered entries in a single transaction.
+     * <p>
+     * This function blocks until the transaction is committed.
+     * </p>
+     *
+     * @throws IOException If the transaction failed, the entries stay buffered.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        if (Thread.currentThread() == this.writerThread) {
+            this.commit();
+            return;
+        }
+        try {
+            this.writer.submit(() -> {
+                this.commit();
+                return null;
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException exception) {
+                throw exception;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Commits the buffered entries, stops the writer thread and closes the database.
+     *
+     * @throws IOException If the entries could not be committed or the database could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        try {
+            this.flush();
+        } finally {
+            this.closed = true;
+            this.writer.shutdown();
+            try {
+                synchronized (this.readConnection) {
+                    this.readConnection.close();
+                }
+                this.writeConnection.close();
+            } catch (SQLException e) {
+                throw new IOException(e);
+            }
+        }
+    }
+
+    private void buffer(@NotNull String name, byte @NotNull [] bytes) {
+        synchronized (this.pendingLock) {
+            /*Re-insert so that the entry moves to the end*/
+            this.pending.remove(name);
+            this.pending.put(name, bytes);
+        }
+        this.schedule();
+    }
+
+    private void schedule() {
+        if (this.scheduled.compareAndSet(false, true)) {
+            this.writer.schedule(this::commitScheduled, this.commitDelay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void commitScheduled() {
+        this.scheduled.set(false);
+        try {
+            this.commit();
+        } catch (IOException e) {
+            Bukkit.getLogger().warning("Failed to commit container data to " + this.file.getName() + ": " + e.getMessage());
+            e.printStackTrace();
+            /*The entries are still buffered, try again later*/
+            if (this.scheduled.compareAndSet(false, true)) {
+                this.writer.schedule(this::commitScheduled, Math.max(1000L, this.commitDelay), TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Runs the buffered entries as one batch in one transaction, only called on the writer thread.
+     */
+    private void commit() throws IOException {
+        Map<String, byte[]> batch;
+        synchronized (this.pendingLock) {
+            if (this.pending.isEmpty()) {
+                return;
+            }
+            batch = new LinkedHashMap<>(this.pending);
+        }
+        try {
+            boolean upserts = false;
+            boolean deletes = false;
+            for (Map.Entry<String, byte[]> entry : batch.entrySet()) {
+                byte[] bytes = entry.getValue();
+                if (bytes == DELETED) {
+                    this.deleteStatement.setString(1, entry.getKey());
+                    this.deleteStatement.addBatch();
+                    deletes = true;
+                } else {
+                    this.upsertStatement.setString(1, entry.getKey());
+                    this.upsertStatement.setBytes(2, bytes);
+                    this.upsertStatement.addBatch();
+                    upserts = true;
+                }
+            }
+            if (upserts) {
+                this.upsertStatement.executeBatch();
+            }
+            if (deletes) {
+                this.deleteStatement.executeBatch();
+            }
+            this.writeConnection.commit();
+        } catch (SQLException e) {
+            try {
+                this.upsertStatement.clearBatch();
+                this.deleteStatement.clearBatch();
+                this.writeConnection.rollback();
+            } catch (SQLException rollback) {
+                e.addSuppressed(rollback);
+            }
+            throw new IOException(e);
+        }
+        synchronized (this.pendingLock) {
+            /*Only drop the entries that weren't replaced in the meantime*/
+            batch.forEach(this.pending::remove);
+        }
+    }
+
+    private boolean isCommitted(@NotNull String name) throws IOException {
+        synchronized (this.readConnection) {
+            try {
+                this.selectStatement.setString(1, name);
+                try (ResultSet resultSet = this.selectStatement.executeQuery()) {
+                    return resultSet.next();
+                }
+            } catch (SQLException e) {
+                throw new IOException(e);
+            }
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (this.closed) {
+            throw new IOException("Storage is closed: " + this.file.getAbsolutePath());
+        }
+    }
+}
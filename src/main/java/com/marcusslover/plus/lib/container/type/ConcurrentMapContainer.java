@@ -0,0 +1,144 @@
+package com.marcusslover.plus.lib.container.type;
+
+import com.marcusslover.plus.lib.container.extra.EvictionPolicy;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Thread-safe variant of {@link MapContainer}.
+ * <p>
+ * The cache is backed by a {@link ConcurrentHashMap}, so objects can be loaded
+ * from async tasks, e.g. during {@code AsyncPlayerPreLoginEvent}.
+ * Concurrent {@link #loadData(Object)} calls for the same key share one read of the file.
+ * </p>
+ *
+ * @param <K> Key type.
+ * @param <V> Value type.
+ */
+public abstract class ConcurrentMapContainer<K, V> extends MapContainer<K, V> {
+    /*Loads that are currently in progress*/
+    private final Map<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new thread-safe map container.
+     *
+     * @param keyTransformer Function converting the key to the file name.
+     * @param keyComposer    Function converting the file name to the key.
+     * @param valueType      Type of the value.
+     */
+    protected ConcurrentMapContainer(@NotNull Function<K, String> keyTransformer, @NotNull Function<String, K> keyComposer, @NotNull Class<V> valueType) {
+        super(keyTransformer, keyComposer, valueType);
+    }
+
+    @Override
+    protected @NotNull Map<K, V> createCache() {
+        return new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Loads an object from the file.
+     * <p>
+     * If another thread is already loading the same key,
+     * this function waits for it and returns the same object.
+     * </p>
+     *
+     * @param key Key to the object.
+     * @return The object.
+     */
+    @Override
+    public @NotNull V loadData(@NotNull K key) {
+        V cached = this.retrieveLocally(key);
+        if (cached != null) {
+            this.getMetrics().recordCacheHit();
+            return cached;
+        }
+        CompletableFuture<V> load = new CompletableFuture<>();
+        CompletableFuture<V> running = this.loading.putIfAbsent(key, load);
+        if (running != null) {
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+        try {
+            /*The object might have been loaded while we were registering the load*/
+            V data = this.retrieveLocally(key);
+            if (data == null) {
+                this.getMetrics().recordCacheMiss();
+                data = this.readData(key);
+                this.storeLocally(key, data);
+            }
+            load.complete(data);
+            return data;
+        } catch (RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            this.loading.remove(key, load);
+        }
+    }
+
+    /**
+     * Loads an object from the file asynchronously.
+     * <p>
+     * Unlike {@link MapContainer#loadDataAsync(Object)}, the object is put in the cache
+     * on the container read executor, before the future is completed.
+     * Waiting for a load of the same key only blocks a reader thread, never the writer.
+     * </p>
+     *
+     * @param key Key to the object.
+     * @return Future of the object.
+     */
+    @Override
+    public @NotNull CompletableFuture<V> loadDataAsync(@NotNull K key) {
+        V cached = this.retrieveLocally(key);
+        if (cached != null) {
+            this.getMetrics().recordCacheHit();
+            return CompletableFuture.completedFuture(cached);
+        }
+        return CompletableFuture.supplyAsync(() -> this.loadData(key), this.getReadExecutor());
+    }
+
+    /**
+     * Unloads an object from the cache and saves it to the file.
+     * <p>
+     * The object is unloaded only if it wasn't replaced in the meantime.
+     * </p>
+     *
+     * @param key Key to the object.
+     */
+    @Override
+    public void saveData(@NotNull K key) {
+        V data = this.cache.get(key);
+        if (data == null) {
+            return;
+        }
+        this.persist(key, data);
+        if (this.cache.remove(key, data)) {
+            this.onUnloaded(key, data);
+        }
+    }
+
+    @Override
+    public void cleanLocally(@NotNull K key) {
+        V value = this.cache.remove(key);
+        if (value != null) {
+            this.onUnloaded(key, value);
+        }
+    }
+
+    private void onUnloaded(@NotNull K key, @NotNull V value) {
+        this.onValueUnloaded(value);
+        EvictionPolicy<K, V> policy = this.getEvictionPolicy();
+        if (policy != null) {
+            policy.recordRemoval(key);
+        }
+        this.forgetUnloaded(key);
+    }
+}
@@ -1,26 +1,68 @@
 package com.marcusslover.plus.lib.container.type;
 
-import com.google.gson.Gson;
 import com.marcusslover.plus.lib.container.AbstractContainer;
+import com.marcusslover.plus.lib.container.LoadProgress;
+import com.marcusslover.plus.lib.container.codec.IContainerCodec;
+import com.marcusslover.plus.lib.container.extra.DirtyTracking;
+import com.marcusslover.plus.lib.container.extra.EvictionPolicy;
+import com.marcusslover.plus.lib.container.extra.Journaled;
+import com.marcusslover.plus.lib.container.extra.ValueIndex;
+import com.marcusslover.plus.lib.container.extra.WriteBehind;
+import com.marcusslover.plus.lib.container.io.ContainerJournal;
+import com.marcusslover.plus.lib.container.io.CountingInputStream;
+import com.marcusslover.plus.lib.container.io.CountingOutputStream;
+import com.marcusslover.plus.lib.container.io.WriteBehindQueue;
+import com.marcusslover.plus.lib.container.storage.FileStorage;
+import com.marcusslover.plus.lib.container.storage.IContainerStorage;
+import lombok.AccessLevel;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Container that represents a map of objects.
  * Key is the name of the file. Files are dynamic.
- * Value is the object. Each value is serialized to its own json file.
+ * Value is the object. Each value is serialized to its own file,
+ * the format of the files is defined by {@link #getCodec()}.
+ * The layout of the files is defined by {@link #createStorage()}.
  *
  * @param <K> Key type.
  * @param <V> Value type.
@@ -32,11 +74,84 @@ public abstract class MapContainer<K, V> extends AbstractContainer<K> {
     protected static final Function<String, String> TRANSFORMER = (x -> x);
     protected static final Function<String, String> COMPOSER = (x -> x);
     /*Container data*/
-    protected final Map<K, V> cache = new HashMap<>();
+    protected final Map<K, V> cache = this.createCache();
     /*File naming solution*/
     private final Function<K, String> keyTransformer;
     private final Function<String, K> keyComposer;
     private final Class<V> valueType;
+    /*Encoded objects pending to be written by the write-behind mode and async functions*/
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private volatile @Nullable WriteBehindQueue<K, byte[]> writeQueue;
+    /*Reads started by loadDataAsync, not yet put in the cache*/
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private final Map<K, CompletableFuture<V>> asyncLoads = new ConcurrentHashMap<>();
+    /*Keeps the cache bounded, null means the cache is unbounded*/
+    @EqualsAndHashCode.Exclude
+    private @Nullable EvictionPolicy<K, V> evictionPolicy;
+    /*Write-ahead journal of the pending writes, null if the container is not journaled*/
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private final @Nullable Journaled journaled = this.getClass().getAnnotation(Journaled.class);
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private volatile @Nullable ContainerJournal journal;
+    /*Secondary indexes of the loaded objects*/
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private final List<ValueIndex<K, V, ?>> indexes = new CopyOnWriteArrayList<>();
+    /*Where the encoded objects are kept, created lazily*/
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private volatile @Nullable IContainerStorage storage;
+    /*Dirty tracking, null means every object is always written*/
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private final @Nullable DirtyTracking dirtyTracking = this.getClass().getAnnotation(DirtyTracking.class);
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private final Set<K> dirtyKeys = ConcurrentHashMap.newKeySet();
+    /*Content hashes of the last persisted objects, only used with hash comparison*/
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private final Map<K, Long> persistedHashes = new ConcurrentHashMap<>();
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private final AtomicLong writtenCount = new AtomicLong();
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private final AtomicLong skippedCount = new AtomicLong();
+
+    /**
+     * Creates the map that caches the loaded objects.
+     * <p>
+     * This function is called once, while the container is being constructed.
+     * </p>
+     *
+     * @return The cache map.
+     */
+    protected @NotNull Map<K, V> createCache() {
+        return new HashMap<>();
+    }
+
+    /**
+     * Creates the storage of the encoded objects.
+     * <p>
+     * By default, every object is kept in its own file inside the parent folder.
+     * Override it to return e.g. {@link com.marcusslover.plus.lib.container.storage.SegmentStorage}
+     * to pack all the objects into a single file instead.
+     * This function is called once, when the storage is first needed.
+     * </p>
+     *
+     * @return The storage.
+     */
+    protected @NotNull IContainerStorage createStorage() {
+        return new FileStorage(this.getParentFolder(), this.getFileExtension(this.getCodec()));
+    }
 
     /**
      * Creates a new instance of an object.
@@ -74,9 +189,59 @@ public abstract class MapContainer<K, V> extends AbstractContainer<K> {
         // do some extra thing when the value is unloaded
     }
 
+    /**
+     * Push the updated object to the cache and save it to the file.
+     * <p>
+     * Does nothing if the object is not loaded, e.g. because it was evicted in the meantime.
+     * Use {@link #writeData(K, V)} with a null value to delete the stored object.
+     * </p>
+     *
+     * @param key Key of the object.
+     */
     @Override
     public void update(@NotNull K key) {
-        this.writeData(key, this.retrieveLocally(key));
+        V value = this.retrieveLocally(key);
+        if (value == null) {
+            return;
+        }
+        EvictionPolicy<K, V> policy = this.evictionPolicy;
+        if (policy != null) {
+            /*The value might have changed its weight*/
+            policy.recordStore(key, value);
+        }
+        this.reindex(key, value);
+        this.persist(key, value);
+    }
+
+    /**
+     * Writes all the pending objects to the storage.
+     * <p>
+     * The journal of a {@link Journaled} container is truncated afterwards.
+     * </p>
+     */
+    @Override
+    public void flush() {
+        ContainerJournal journal = this.journal;
+        if (journal != null) {
+            journal.checkpoint();
+        } else {
+            this.flushPending();
+        }
+    }
+
+    private void flushPending() {
+        WriteBehindQueue<K, byte[]> queue = this.writeQueue;
+        if (queue != null) {
+            queue.flush();
+        }
+        IContainerStorage storage = this.storage;
+        if (storage != null) {
+            try {
+                storage.flush();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
     }
 
     /**
@@ -88,14 +253,76 @@ public abstract class MapContainer<K, V> extends AbstractContainer<K> {
      */
     public @NotNull V loadData(@NotNull K key) {
         if (this.cache.containsKey(key)) {
+            this.getMetrics().recordCacheHit();
             //noinspection DataFlowIssue
             return this.retrieveLocally(key);
         }
-        V data = this.readData(key);
+        this.getMetrics().recordCacheMiss();
+        /*Takes over a read started by loadDataAsync, so the same object ends up in the cache*/
+        CompletableFuture<V> running = this.asyncLoads.remove(key);
+        V data = running == null ? this.readData(key) : running.join();
         this.storeLocally(key, data);
         return data;
     }
 
+    /**
+     * Loads an object from the file asynchronously.
+     * <p>
+     * The file is read on the container read executor and the future is completed there,
+     * so it is safe to wait for it on the main thread. The object is put in the cache
+     * on the main thread afterwards, {@link #loadData(Object)} called before that
+     * returns the same object. Callbacks of the future run on the reader thread,
+     * use {@link #loadDataAsyncOnMainThread(Object)} to handle the object on the main thread.
+     * </p>
+     *
+     * @param key Key to the object.
+     * @return Future of the object.
+     */
+    public @NotNull CompletableFuture<V> loadDataAsync(@NotNull K key) {
+        V cached = this.retrieveLocally(key);
+        if (cached != null) {
+            this.getMetrics().recordCacheHit();
+            return CompletableFuture.completedFuture(cached);
+        }
+        CompletableFuture<V> running = this.asyncLoads.get(key);
+        if (running != null) {
+            return running;
+        }
+        this.getMetrics().recordCacheMiss();
+        CompletableFuture<V> read = CompletableFuture.supplyAsync(() -> this.readData(key), this.getReadExecutor());
+        this.asyncLoads.put(key, read);
+        read.whenCompleteAsync((data, throwable) -> {
+            /*Not taken over by loadData in the meantime*/
+            if (this.asyncLoads.remove(key, read) && throwable == null && !this.cache.containsKey(key)) {
+                this.storeLocally(key, data);
+            }
+        }, this.getMainThreadExecutor());
+        return read;
+    }
+
+    /**
+     * Loads an object from the file asynchronously and completes on the main thread.
+     * <p>
+     * The future is completed once the object is in the cache, its callbacks run
+     * on the main thread. Never wait for it on the main thread, it would never complete.
+     * </p>
+     *
+     * @param key Key to the object.
+     * @return Future of the object.
+     */
+    public @NotNull CompletableFuture<V> loadDataAsyncOnMainThread(@NotNull K key) {
+        return this.loadDataAsync(key).thenApplyAsync(data -> {
+            /*The object might have been loaded in the meantime*/
+            V loaded = this.retrieveLocally(key);
+            if (loaded != null) {
+                return loaded;
+            }
+            this.asyncLoads.remove(key);
+            this.storeLocally(key, data);
+            return data;
+        }, this.getMainThreadExecutor());
+    }
+
     /**
      * Loads all the objects from the files.
      * Called during start of the plugin, only when the container
@@ -103,19 +330,206 @@ public abstract class MapContainer<K, V> extends AbstractContainer<K> {
      */
     @Override
     public void loadAllData() {
-        File[] files = this.parentFolder.listFiles();
-        if (files == null) {
-            return;
+        Set<K> loaded = new HashSet<>();
+        for (Map.Entry<K, String> entry : this.listUnloaded().entrySet()) {
+            V value = this.readStored(entry.getKey(), entry.getValue());
+            if (value != null) {
+                this.storeLoaded(entry.getKey(), value, loaded);
+            }
+        }
+    }
+
+    /**
+     * Loads all the objects from the files.
+     * <p>
+     * The files are read and parsed concurrently on the given pool,
+     * the objects are then put in the cache on the calling thread.
+     * </p>
+     *
+     * @param pool Pool used to read the files.
+     */
+    @Override
+    public void loadAllData(@NotNull ForkJoinPool pool) {
+        try {
+            this.readAllData(pool).join().getAsInt();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    /**
+     * Reads all the objects from the files, without loading them yet.
+     * <p>
+     * The files are read and parsed concurrently on the given pool. The future completes with a task
+     * that puts the objects in the cache and returns the amount of objects it loaded.
+     * Objects that were loaded in the meantime are not replaced.
+     * </p>
+     *
+     * @param pool     Pool used to read the files.
+     * @param progress Progress of the read, counting every file.
+     * @return Future of the task loading the objects.
+     */
+    @Override
+    public @NotNull CompletableFuture<IntSupplier> readAllData(@NotNull ForkJoinPool pool, @NotNull LoadProgress progress) {
+        Map<K, String> files = this.listUnloaded();
+        progress.setTotal(files.size());
+        if (files.isEmpty()) {
+            return CompletableFuture.completedFuture(() -> 0);
+        }
+        return CompletableFuture.supplyAsync(() -> files.entrySet().parallelStream()
+                        .map(entry -> {
+                            V value = this.readStored(entry.getKey(), entry.getValue());
+                            progress.increment();
+                            return new AbstractMap.SimpleEntry<>(entry.getKey(), value);
+                        })
+                        .collect(Collectors.<Map.Entry<K, V>>toList()), pool)
+                .thenApply(entries -> () -> {
+                    Set<K> loaded = new HashSet<>();
+                    for (Map.Entry<K, V> entry : entries) {
+                        if (entry.getValue() == null || this.containsKeyLocally(entry.getKey())) {
+                            continue;
+                        }
+                        this.storeLoaded(entry.getKey(), entry.getValue(), loaded);
+                    }
+                    return loaded.size();
+                });
+    }
+
+    /**
+     * Streams all the stored objects without loading them into the cache.
+     * <p>
+     * Objects are read lazily, one by one, while the stream is consumed.
+     * Objects that are already loaded are taken from the cache, pending writes
+     * are taken from the write queue. The stream can be made parallel, modifications
+     * of the streamed objects are not written -> Use {@link #transformStored(BiFunction)} for that.
+     * </p>
+     *
+     * @return Stream of keys and objects.
+     */
+    public @NotNull Stream<Map.Entry<K, V>> streamStored() {
+        Collection<String> names;
+        try {
+            names = this.getStorage().list();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        /*Snapshot, the stream might be consumed on other threads*/
+        Map<K, V> loaded = new HashMap<>(this.cache);
+        return names.stream()
+                .<Map.Entry<K, V>>map(name -> {
+                    K key = this.keyComposer.apply(name);
+                    V value = loaded.get(key);
+                    if (value == null) {
+                        WriteBehindQueue.Pending<byte[]> pending = this.getPending(key);
+                        value = pending != null ? this.decodePending(pending) : this.read(name);
+                    }
+                    return value == null ? null : new AbstractMap.SimpleImmutableEntry<>(key, value);
+                })
+                .filter(Objects::nonNull);
+    }
+
+    /**
+     * Transforms all the stored objects and writes them back, without loading them into the cache.
+     *
+     * @param transform Function returning the object to write back, null deletes the object.
+     * @return Amount of transformed objects.
+     * @see #transformStored(BiFunction, ForkJoinPool)
+     */
+    public int transformStored(@NotNull BiFunction<K, V, V> transform) {
+        return this.transformStored(transform, null);
+    }
+
+    /**
+     * Transforms all the stored objects and writes them back, without loading them into the cache.
+     * <p>
+     * Pending writes are flushed first. Objects that are not loaded are read, transformed
+     * and written one by one, concurrently on the given pool if there is one.
+     * Objects that are already loaded are transformed on the calling thread
+     * and persisted through {@link #update(K)}.
+     * </p>
+     * <p>
+     * Use it e.g. to reset a property of every player, without pinning every player in the cache.
+     * </p>
+     *
+     * @param transform Function returning the object to write back, null deletes the object.
+     *                  It may return the same, modified, object.
+     * @param pool      Pool used to transform the objects that are not loaded, null to do it on the calling thread.
+     * @return Amount of transformed objects.
+     */
+    public int transformStored(@NotNull BiFunction<K, V, V> transform, @Nullable ForkJoinPool pool) {
+        this.flush();
+        AtomicInteger transformed = new AtomicInteger();
+        Consumer<Map.Entry<K, String>> apply = entry -> {
+            K key = entry.getKey();
+            V value = this.read(entry.getValue());
+            if (value == null) {
+                return;
+            }
+            this.writeData(key, transform.apply(key, value));
+            /*The object is not loaded, there is nothing to compare with later*/
+            this.persistedHashes.remove(key);
+            transformed.incrementAndGet();
+        };
+        Map<K, String> unloaded = this.listUnloaded();
+        if (pool == null) {
+            unloaded.entrySet().forEach(apply);
+        } else {
+            try {
+                pool.submit(() -> unloaded.entrySet().parallelStream().forEach(apply)).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+        for (K key : List.copyOf(this.cache.keySet())) {
+            V value = this.cache.get(key);
+            if (value == null) {
+                continue;
+            }
+            V result = transform.apply(key, value);
+            if (result == null) {
+                this.cleanLocally(key);
+                this.persist(key, null);
+            } else {
+                if (result != value) {
+                    this.storeLocally(key, result);
+                }
+                this.markDirty(key);
+                this.update(key);
+            }
+            transformed.incrementAndGet();
         }
-        for (File file : files) {
-            String fileName = file.getName();
-            K apply = this.keyComposer.apply(fileName.replaceFirst("(\\.json)", ""));
-            V read = this.read(fileName);
+        return transformed.get();
+    }
+
+    /**
+     * Lists the stored objects that are not loaded yet.
+     *
+     * @return Map of keys to entry names.
+     */
+    private @NotNull Map<K, String> listUnloaded() {
+        Collection<String> names;
+        try {
+            names = this.getStorage().list();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        Map<K, String> unloaded = new LinkedHashMap<>(names.size());
+        for (String name : names) {
+            K apply = this.keyComposer.apply(name);
             if (this.containsKeyLocally(apply)) {
                 continue;
             }
-            this.storeLocally(apply, read);
+            unloaded.put(apply, name);
         }
+        return unloaded;
+    }
+
+    private @Nullable V readStored(@NotNull K key, @NotNull String name) {
+        WriteBehindQueue.Pending<byte[]> pending = this.getPending(key);
+        return pending != null ? this.decodePending(pending) : this.readTracked(key, name);
     }
 
     /**
@@ -128,8 +542,61 @@ public abstract class MapContainer<K, V> extends AbstractContainer<K> {
             return;
         }
         V data = this.retrieveLocally(key);
-        this.writeData(key, data);
+        this.persist(key, data);
+        this.cleanLocally(key);
+    }
+
+    /**
+     * Unloads an object from the cache and saves it to the file asynchronously.
+     * <p>
+     * The object is unloaded right away, the file is written on the container I/O executor.
+     * Loading the object again before the write is done returns the pending object.
+     * </p>
+     *
+     * @param key Key to the object.
+     * @return Future completed once the object is written.
+     */
+    public @NotNull CompletableFuture<Void> saveDataAsync(@NotNull K key) {
+        if (!this.cache.containsKey(key)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        V data = this.retrieveLocally(key);
+        CompletableFuture<Void> future;
+        if (this.isUnchanged(key, data)) {
+            future = CompletableFuture.completedFuture(null);
+        } else {
+            future = this.enqueue(key, data);
+        }
         this.cleanLocally(key);
+        return future;
+    }
+
+    /**
+     * Saves the object to the file asynchronously.
+     * <p>
+     * The object stays in the cache, the file is written on the container I/O executor.
+     * In write-behind mode the future completes once the pending write is flushed.
+     * </p>
+     *
+     * @param key Key to the object.
+     * @return Future completed once the object is written.
+     */
+    public @NotNull CompletableFuture<Void> updateAsync(@NotNull K key) {
+        V data = this.retrieveLocally(key);
+        if (data == null || this.isUnchanged(key, data)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return this.enqueue(key, data);
+    }
+
+    /**
+     * Checks if the object has a write that is queued and not written yet.
+     *
+     * @param key Key to the object.
+     * @return True if a write of the object is pending.
+     */
+    public boolean hasPendingWrite(@NotNull K key) {
+        return this.getPending(key) != null;
     }
 
     /**
@@ -164,11 +631,16 @@ public abstract class MapContainer<K, V> extends AbstractContainer<K> {
      * @param key Key to the object.
      */
     public void cleanLocally(@NotNull K key) {
-        V value = this.retrieveLocally(key);
+        V value = this.cache.get(key);
         if (value != null) {
             this.onValueUnloaded(value);
         }
         this.cache.remove(key);
+        EvictionPolicy<K, V> policy = this.evictionPolicy;
+        if (policy != null) {
+            policy.recordRemoval(key);
+        }
+        this.forgetUnloaded(key);
     }
 
     /**
@@ -186,8 +658,185 @@ public abstract class MapContainer<K, V> extends AbstractContainer<K> {
         if (value == null) {
             this.cleanLocally(key);
         } else {
-            this.onValueLoaded(value);
-            this.cache.put(key, value);
+            this.putLocally(key, value);
+            this.evict();
+        }
+    }
+
+    private void putLocally(@NotNull K key, @NotNull V value) {
+        this.onValueLoaded(value);
+        this.cache.put(key, value);
+        this.reindex(key, value);
+        EvictionPolicy<K, V> policy = this.evictionPolicy;
+        if (policy != null) {
+            policy.recordStore(key, value);
+        }
+    }
+
+    /**
+     * Puts the object read by a bulk load in the cache.
+     * <p>
+     * Objects of the same load evicted right away are unloaded without writing them,
+     * they are exactly what is stored.
+     * </p>
+     *
+     * @param key    Key to the object.
+     * @param value  The object.
+     * @param loaded Keys stored by the load so far.
+     */
+    private void storeLoaded(@NotNull K key, @NotNull V value, @NotNull Set<K> loaded) {
+        this.putLocally(key, value);
+        loaded.add(key);
+        this.evict(loaded);
+    }
+
+    /**
+     * Sets the eviction policy of the cache.
+     * <p>
+     * Look at {@link EvictionPolicy} for more information.
+     * Objects that are already loaded are tracked by the new policy right away.
+     * </p>
+     *
+     * @param evictionPolicy The policy or null to keep the cache unbounded.
+     */
+    public void setEvictionPolicy(@Nullable EvictionPolicy<K, V> evictionPolicy) {
+        if (this.evictionPolicy != null) {
+            this.evictionPolicy.clear();
+        }
+        this.evictionPolicy = evictionPolicy;
+        if (evictionPolicy != null) {
+            this.cache.forEach(evictionPolicy::recordStore);
+            this.evict();
+        }
+    }
+
+    /**
+     * Evicts the objects that exceed the limits of the eviction policy.
+     * <p>
+     * The evicted objects are saved and unloaded, just like with {@link #saveData(K)}.
+     * This function is called whenever an object is put in the cache,
+     * call it periodically to also evict objects that expired in the meantime.
+     * </p>
+     */
+    public void evict() {
+        this.evict(Set.of());
+    }
+
+    /**
+     * Evicts the objects that exceed the limits of the eviction policy.
+     *
+     * @param unchanged Keys of the objects that are known to be unchanged, these are unloaded without being written.
+     */
+    private void evict(@NotNull Set<K> unchanged) {
+        EvictionPolicy<K, V> policy = this.evictionPolicy;
+        if (policy == null) {
+            return;
+        }
+        for (K key : policy.collectVictims()) {
+            if (!this.containsKeyLocally(key)) {
+                policy.recordRemoval(key);
+                continue;
+            }
+            if (unchanged.contains(key)) {
+                this.cleanLocally(key);
+            } else {
+                this.saveData(key);
+            }
+            this.getMetrics().recordEviction();
+        }
+    }
+
+    /**
+     * Adds a secondary index of the loaded objects.
+     * <p>
+     * Look at {@link ValueIndex} for more information.
+     * Objects that are already loaded are indexed right away.
+     * Indexes are usually declared as fields of the container:
+     * <pre>{@code
+     * public final ValueIndex<UUID, Clan, String> byTag = this.addIndex(Clan::getTag);
+     * }</pre>
+     * </p>
+     *
+     * @param extractor Function extracting the indexed value from the object.
+     * @param <I>       Indexed value type.
+     * @return The index.
+     */
+    public <I> @NotNull ValueIndex<K, V, I> addIndex(@NotNull Function<V, I> extractor) {
+        ValueIndex<K, V, I> index = new ValueIndex<>(extractor);
+        this.cache.forEach(index::add);
+        this.indexes.add(index);
+        return index;
+    }
+
+    /**
+     * Removes the secondary index.
+     *
+     * @param index The index.
+     */
+    public void removeIndex(@NotNull ValueIndex<K, V, ?> index) {
+        if (this.indexes.remove(index)) {
+            index.clear();
+        }
+    }
+
+    /**
+     * Finds the loaded objects with the given indexed value.
+     *
+     * @param index The index.
+     * @param value Indexed value.
+     * @param <I>   Indexed value type.
+     * @return The objects, empty if none is loaded.
+     */
+    public <I> @NotNull List<V> findBy(@NotNull ValueIndex<K, V, I> index, @NotNull I value) {
+        List<K> keys = index.get(value);
+        if (keys.isEmpty()) {
+            return List.of();
+        }
+        List<V> found = new ArrayList<>(keys.size());
+        for (K key : keys) {
+            V loaded = this.cache.get(key);
+            if (loaded != null) {
+                found.add(loaded);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Finds any loaded object with the given indexed value.
+     * <p>
+     * Useful for unique values, like the tag of a clan.
+     * </p>
+     *
+     * @param index The index.
+     * @param value Indexed value.
+     * @param <I>   Indexed value type.
+     * @return The object or null if none is loaded.
+     */
+    public <I> @Nullable V findFirstBy(@NotNull ValueIndex<K, V, I> index, @NotNull I value) {
+        K key = index.getFirst(value);
+        return key == null ? null : this.cache.get(key);
+    }
+
+    /**
+     * Refreshes the secondary indexes of the object.
+     * <p>
+     * Call it after changing an indexed property of the object,
+     * {@link #update(K)} does it automatically.
+     * </p>
+     *
+     * @param key Key to the object.
+     */
+    public void reindex(@NotNull K key) {
+        V value = this.cache.get(key);
+        if (value != null) {
+            this.reindex(key, value);
+        }
+    }
+
+    private void reindex(@NotNull K key, @NotNull V value) {
+        for (ValueIndex<K, V, ?> index : this.indexes) {
+            index.add(key, value);
         }
     }
 
@@ -202,7 +851,12 @@ public abstract class MapContainer<K, V> extends AbstractContainer<K> {
      * @return The object or null if it is not loaded.
      */
     public @Nullable V retrieveLocally(@NotNull K key) {
-        return this.cache.getOrDefault(key, null);
+        V value = this.cache.getOrDefault(key, null);
+        EvictionPolicy<K, V> policy = this.evictionPolicy;
+        if (policy != null && value != null) {
+            policy.recordAccess(key);
+        }
+        return value;
     }
 
     /**
@@ -216,33 +870,71 @@ public abstract class MapContainer<K, V> extends AbstractContainer<K> {
      * @return The object.
      */
     public @NotNull V readData(@NotNull K key) {
-        String fileName = this.keyTransformer.apply(key);
-        V read = this.read(fileName + ".json");
-        return Objects.requireNonNullElseGet(read, () -> this.emptyValue(key));
+        /*Pending writes are newer than the file*/
+        WriteBehindQueue.Pending<byte[]> pending = this.getPending(key);
+        V read = pending != null ? this.decodePending(pending) : this.readTracked(key, this.keyTransformer.apply(key));
+        if (read != null) {
+            return read;
+        }
+        /*The new object is not stored yet, so it has to be written*/
+        this.markDirty(key);
+        return this.emptyValue(key);
     }
 
     /**
-     * Reads the object from the file.
+     * Reads the object from the storage.
      * <p>
      * This is an internal (raw) function -> Use {@link #readData(Object)} instead.
      * </p>
      *
-     * @param fileName Name of the file.
-     * @return The object.
+     * @param name Name of the entry, the transformed key without any extension.
+     * @return The object or null if it is not stored.
      */
-    public @Nullable V read(@NotNull String fileName) {
-        V data;
-        Gson gson = this.getGson();
-        File file = new File(this.getParentFolder(), fileName);
-        if (file.exists()) {
-            try (FileReader fileReader = new FileReader(file)) {
-                data = gson.fromJson(fileReader, this.valueType);
-            } catch (IOException e) {
-                throw new RuntimeException(e);
+    public @Nullable V read(@NotNull String name) {
+        long start = System.nanoTime();
+        try (InputStream stored = this.getStorage().read(name)) {
+            if (stored == null) {
+                return null;
             }
-            return data;
+            CountingInputStream inputStream = new CountingInputStream(stored);
+            V value = this.getCodec().decode(inputStream, this.valueType);
+            this.getMetrics().recordRead(name, System.nanoTime() - start, inputStream.getCount());
+            return value;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private @Nullable V readTracked(@NotNull K key, @NotNull String name) {
+        if (!this.isHashCompared()) {
+            return this.read(name);
+        }
+        /*Remember the hash of the stored content, so that unchanged objects are not written again*/
+        long start = System.nanoTime();
+        byte[] bytes;
+        try (InputStream inputStream = this.getStorage().read(name)) {
+            if (inputStream == null) {
+                return null;
+            }
+            bytes = inputStream.readAllBytes();
+            V value = this.getCodec().decode(new ByteArrayInputStream(bytes), this.valueType);
+            this.persistedHashes.put(key, hash(bytes));
+            this.getMetrics().recordRead(name, System.nanoTime() - start, bytes.length);
+            return value;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private @Nullable V read(@NotNull File file, @NotNull IContainerCodec codec) {
+        if (!file.exists()) {
+            return null;
+        }
+        try (InputStream inputStream = new BufferedInputStream(new FileInputStream(file))) {
+            return codec.decode(inputStream, this.valueType);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
         }
-        return null;
     }
 
     /**
@@ -250,29 +942,432 @@ public abstract class MapContainer<K, V> extends AbstractContainer<K> {
      * <p>
      * This function does not unload anything from the cache.
      * The cache is not affected by this function.
+     * The file is replaced atomically, so it is never left half-written.
      * If you want to delete the file, set the value to null!
+     * A pending write of the same key is replaced, so it never overwrites this one.
+     * In a {@link Journaled} container, the object is appended to the journal and synced first.
      * </p>
      *
      * @param key   Key to the object.
      * @param value Object to write.
      */
     public void writeData(@NotNull K key, @Nullable V value) {
-        String fileName = this.keyTransformer.apply(key);
-        Gson gson = this.getGson();
-        File file = new File(this.getParentFolder(), fileName + ".json");
-        if (value == null) {
-            boolean delete = file.delete();
-            if (!delete) {
+        if (this.isJournaled()) {
+            /*The journal might still hold an older object of the key, which must not be replayed over this one after a crash*/
+            this.getJournal().appendSync(this.keyTransformer.apply(key), value == null ? null : this.encode(value));
+        }
+        WriteBehindQueue<K, byte[]> queue = this.writeQueue;
+        if (queue == null) {
+            this.write(key, value);
+            return;
+        }
+        queue.writeThrough(key, () -> this.write(key, value));
+    }
+
+    private void write(@NotNull K key, @Nullable V value) {
+        if (value == null || this.isHashCompared()) {
+            this.writeEncoded(key, value == null ? null : this.encode(value));
+            return;
+        }
+        long start = System.nanoTime();
+        String name = this.keyTransformer.apply(key);
+        IContainerCodec codec = this.getCodec();
+        CountingOutputStream[] counting = new CountingOutputStream[1];
+        try {
+            this.getStorage().write(name, outputStream -> {
+                counting[0] = new CountingOutputStream(outputStream);
+                codec.encode(value, value.getClass(), counting[0]);
+            });
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        this.writtenCount.incrementAndGet();
+        this.getMetrics().recordWrite(name, System.nanoTime() - start, counting[0] == null ? 0L : counting[0].getCount());
+    }
+
+    /**
+     * Writes the encoded object to the storage.
+     *
+     * @param key   Key to the object.
+     * @param bytes Encoded object, null to delete it.
+     */
+    private void writeEncoded(@NotNull K key, byte @Nullable [] bytes) {
+        long start = System.nanoTime();
+        String name = this.keyTransformer.apply(key);
+        try {
+            if (bytes == null) {
+                this.persistedHashes.remove(key);
+                this.getStorage().delete(name);
+            } else if (this.isHashCompared()) {
+                long hash = hash(bytes);
+                Long persisted = this.persistedHashes.get(key);
+                if (persisted != null && persisted == hash) {
+                    this.skippedCount.incrementAndGet();
+                    return;
+                }
+                this.getStorage().write(name, outputStream -> outputStream.write(bytes));
+                this.persistedHashes.put(key, hash);
+            } else {
+                this.getStorage().write(name, outputStream -> outputStream.write(bytes));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        this.writtenCount.incrementAndGet();
+        this.getMetrics().recordWrite(name, System.nanoTime() - start, bytes == null ? 0L : bytes.length);
+    }
+
+    /**
+     * Converts the json files, the default format of containers, to the current format.
+     *
+     * @return Amount of converted files.
+     * @see #migrate(IContainerCodec)
+     */
+    public int migrate() {
+        return this.migrate(IContainerCodec.json(this.getGson()));
+    }
+
+    /**
+     * Converts the files written with another codec to the current format.
+     * <p>
+     * Every file of the given codec is read and written again using {@link #getCodec()}
+     * to the current storage, the old file is deleted afterwards. Objects in the cache are not affected.
+     * Use it e.g. with {@link IContainerCodec#json(com.google.gson.Gson)} to convert
+     * the old json files after switching to a different format or storage.
+     * </p>
+     *
+     * @param from Codec the files were written with.
+     * @return Amount of converted files.
+     */
+    public int migrate(@NotNull IContainerCodec from) {
+        IContainerCodec codec = this.getCodec();
+        IContainerStorage storage = this.getStorage();
+        FileStorage source = new FileStorage(this.getParentFolder(), this.getFileExtension(from));
+        int migrated = 0;
+        for (String name : source.list()) {
+            File file = source.getFile(name);
+            V value = this.read(file, from);
+            if (value == null) {
+                continue;
+            }
+            try {
+                storage.write(name, outputStream -> codec.encode(value, value.getClass(), outputStream));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            /*Same codec with the per-file layout writes the file in place*/
+            boolean replaced = storage instanceof FileStorage fileStorage && fileStorage.getFile(name).equals(file);
+            if (!replaced && !file.delete()) {
                 throw new RuntimeException("Failed to delete file: " + file.getAbsolutePath());
             }
+            migrated++;
+        }
+        return migrated;
+    }
+
+    private @NotNull String getFileExtension(@NotNull IContainerCodec codec) {
+        return "." + codec.getExtension();
+    }
+
+    /**
+     * Persists the object.
+     * <p>
+     * In write-behind mode the object is only queued and written later,
+     * otherwise it is written right away with {@link #writeData(K, V)}.
+     * </p>
+     *
+     * @param key   Key to the object.
+     * @param value Object to persist.
+     */
+    protected void persist(@NotNull K key, @Nullable V value) {
+        if (this.isUnchanged(key, value)) {
             return;
         }
-        try (FileWriter fileWriter = new FileWriter(file)) {
-            gson.toJson(value, fileWriter);
-            fileWriter.flush();
+        if (this.isWriteBehind()) {
+            this.enqueue(key, value);
+            return;
+        }
+        try {
+            this.writeData(key, value);
+        } catch (RuntimeException e) {
+            /*Not persisted, keep the object dirty*/
+            if (value != null) {
+                this.markDirty(key);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Checks if the container records its pending writes in a journal.
+     *
+     * @return True if the container is annotated with {@link Journaled}.
+     */
+    public boolean isJournaled() {
+        return this.journaled != null;
+    }
+
+    /**
+     * Opens the journal of a {@link Journaled} container.
+     * <p>
+     * Entries left in the journal by a crash are written to the storage,
+     * this is done by {@link com.marcusslover.plus.lib.container.ContainerManager#init(org.bukkit.plugin.Plugin)}
+     * before any objects are loaded.
+     * </p>
+     *
+     * @return Amount of entries replayed when the journal was opened.
+     */
+    public int replayJournal() {
+        return this.isJournaled() ? this.getJournal().getReplayedCount() : 0;
+    }
+
+    private void journal(@NotNull K key, byte @Nullable [] bytes) {
+        if (this.isJournaled()) {
+            this.getJournal().append(this.keyTransformer.apply(key), bytes);
+        }
+    }
+
+    private @NotNull ContainerJournal getJournal() {
+        ContainerJournal journal = this.journal;
+        if (journal != null) {
+            return journal;
+        }
+        synchronized (this) {
+            journal = this.journal;
+            if (journal == null) {
+                Journaled journaled = Objects.requireNonNull(this.journaled);
+                journal = new ContainerJournal(this.getParentFolder(), this.getStorage(), this.getExecutor(),
+                        journaled.syncDelay(), journaled.maxSize(), this::flushPending);
+                this.journal = journal;
+            }
+        }
+        return journal;
+    }
+
+    private byte @NotNull [] encode(@NotNull V value) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try {
+            this.getCodec().encode(value, value.getClass(), outputStream);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Decodes the object of a pending write.
+     *
+     * @param pending The pending write.
+     * @return A new instance of the object or null if the object is pending deletion.
+     */
+    private @Nullable V decodePending(@NotNull WriteBehindQueue.Pending<byte[]> pending) {
+        byte[] bytes = pending.value();
+        if (bytes == null) {
+            return null;
+        }
+        try {
+            return this.getCodec().decode(new ByteArrayInputStream(bytes), this.valueType);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Queues the object to be written on the container I/O executor.
+     * <p>
+     * The object is encoded right away, on the calling thread,
+     * so it can be modified again while the write is pending.
+     * </p>
+     *
+     * @param key   Key to the object.
+     * @param value Object to write, null to delete it.
+     * @return Future completed once the object is written.
+     */
+    private @NotNull CompletableFuture<Void> enqueue(@NotNull K key, @Nullable V value) {
+        byte[] bytes = value == null ? null : this.encode(value);
+        CompletableFuture<Void> future = this.getWriteQueue().enqueue(key, bytes);
+        /*Appended after the write was queued, so that a checkpoint never drops a write it didn't cover*/
+        this.journal(key, bytes);
+        if (this.dirtyTracking != null && value != null) {
+            future.whenComplete((unused, throwable) -> {
+                if (throwable != null) {
+                    /*Dropped after failing, the next update has to write the object again*/
+                    this.dirtyKeys.add(key);
+                }
+            });
+        }
+        return future;
+    }
+
+    /**
+     * Gets the storage of the encoded objects.
+     *
+     * @return The storage.
+     * @see #createStorage()
+     */
+    protected @NotNull IContainerStorage getStorage() {
+        IContainerStorage storage = this.storage;
+        if (storage != null) {
+            return storage;
+        }
+        synchronized (this) {
+            storage = this.storage;
+            if (storage == null) {
+                if (this.getParentFolder() == null) {
+                    throw new IllegalStateException("Container is not initialized yet.");
+                }
+                storage = this.createStorage();
+                this.storage = storage;
+            }
+        }
+        return storage;
+    }
+
+    /**
+     * Marks the object as modified.
+     * <p>
+     * Only has an effect on containers annotated with {@link DirtyTracking},
+     * objects that are not marked dirty are not written by {@link #update(K)} and {@link #saveData(K)}.
+     * </p>
+     *
+     * @param key Key to the object.
+     */
+    public void markDirty(@NotNull K key) {
+        if (this.dirtyTracking != null) {
+            this.dirtyKeys.add(key);
+        }
+    }
+
+    /**
+     * Checks if the object was marked dirty since it was last persisted.
+     *
+     * @param key Key to the object.
+     * @return True if the object is dirty.
+     */
+    public boolean isDirty(@NotNull K key) {
+        return this.dirtyKeys.contains(key);
+    }
+
+    /**
+     * Gets the keys of all the objects marked dirty.
+     *
+     * @return Snapshot of the dirty keys.
+     */
+    public @NotNull Set<K> getDirtyKeys() {
+        return Set.copyOf(this.dirtyKeys);
+    }
+
+    /**
+     * Gets the keys of the loaded objects that might need to be written.
+     * <p>
+     * With {@link DirtyTracking} and no hash comparison these are only the dirty keys,
+     * otherwise every loaded object is a candidate.
+     * </p>
+     *
+     * @return Snapshot of the keys.
+     */
+    public @NotNull List<K> getSaveCandidates() {
+        DirtyTracking tracking = this.dirtyTracking;
+        if (tracking != null && !tracking.compareHash()) {
+            return this.dirtyKeys.stream().filter(this::containsKeyLocally).collect(Collectors.toList());
+        }
+        return List.copyOf(this.cache.keySet());
+    }
+
+    /**
+     * Gets the amount of objects written to the storage.
+     *
+     * @return The amount of writes, including deletions.
+     */
+    public long getWrittenCount() {
+        return this.writtenCount.get();
+    }
+
+    /**
+     * Gets the amount of writes skipped because the object did not change.
+     *
+     * @return The amount of skipped writes.
+     */
+    public long getSkippedCount() {
+        return this.skippedCount.get();
+    }
+
+    /**
+     * Checks if writing the object can be skipped.
+     * <p>
+     * Consumes the dirty mark of the object, the mark is put back if the write fails.
+     * With hash comparison, the decision is deferred to {@link #writeData(K, V)}.
+     * </p>
+     */
+    private boolean isUnchanged(@NotNull K key, @Nullable V value) {
+        DirtyTracking tracking = this.dirtyTracking;
+        if (tracking == null || value == null) {
+            return false;
+        }
+        boolean dirty = this.dirtyKeys.remove(key);
+        if (dirty || tracking.compareHash()) {
+            return false;
+        }
+        this.skippedCount.incrementAndGet();
+        return true;
+    }
+
+    private boolean isHashCompared() {
+        return this.dirtyTracking != null && this.dirtyTracking.compareHash();
+    }
+
+    /**
+     * Forgets the index entries and the tracking state of an unloaded object.
+     */
+    void forgetUnloaded(@NotNull K key) {
+        for (ValueIndex<K, V, ?> index : this.indexes) {
+            index.remove(key);
+        }
+        if (this.dirtyTracking == null) {
+            return;
+        }
+        this.dirtyKeys.remove(key);
+        /*A pending write still needs the hash to compare against*/
+        if (this.getPending(key) == null) {
+            this.persistedHashes.remove(key);
+        }
+    }
+
+    private static long hash(byte @NotNull [] bytes) {
+        try {
+            return ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(bytes)).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private @Nullable WriteBehindQueue.Pending<byte[]> getPending(@NotNull K key) {
+        WriteBehindQueue<K, byte[]> queue = this.writeQueue;
+        return queue == null ? null : queue.peek(key);
+    }
+
+    private @NotNull WriteBehindQueue<K, byte[]> getWriteQueue() {
+        WriteBehindQueue<K, byte[]> queue = this.writeQueue;
+        if (queue != null) {
+            return queue;
+        }
+        synchronized (this) {
+            queue = this.writeQueue;
+            if (queue == null) {
+                /*Without write-behind, async writes are performed right away*/
+                WriteBehind writeBehind = this.getWriteBehind();
+                long delay = writeBehind == null ? 0L : writeBehind.delay();
+                int batchSize = writeBehind == null ? 64 : writeBehind.batchSize();
+                queue = new WriteBehindQueue<>(this::writeEncoded, this.getExecutor(), delay, batchSize);
+                this.writeQueue = queue;
+            }
+        }
+        return queue;
+    }
+
+    @Override
+    protected int getCachedCount() {
+        return this.cache.size();
     }
 
     /**
@@ -0,0 +1,184 @@
+package com.marcusslover.plus.lib.container.type;
+
+import com.marcusslover.plus.lib.container.codec.IContainerCodec;
+import com.marcusslover.plus.lib.container.storage.IContainerStorage;
+import com.marcusslover.plus.lib.container.storage.MappedSegmentStorage;
+import com.marcusslover.plus.lib.container.storage.SegmentStorage;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+
+/**
+ * Read-only variant of {@link MapContainer} backed by a memory-mapped segment file.
+ * <p>
+ * Meant for read-mostly data like leaderboards or static definitions.
+ * The segment file, written e.g. by a container using {@link SegmentStorage},
+ * is mapped with {@link MappedSegmentStorage} and objects are decoded lazily,
+ * when they are first loaded. Only the loaded objects are kept on the heap,
+ * combine it with an {@link com.marcusslover.plus.lib.container.extra.EvictionPolicy}
+ * to keep the cache bounded.
+ * </p>
+ * <p>
+ * Any attempt to write the objects throws {@link UnsupportedOperationException},
+ * saving an object only unloads it.
+ * </p>
+ *
+ * @param <K> Key type.
+ * @param <V> Value type.
+ */
+public abstract class MappedMapContainer<K, V> extends MapContainer<K, V> {
+
+    /**
+     * Creates a new read-only map container.
+     *
+     * @param keyTransformer Function converting the key to the entry name.
+     * @param keyComposer    Function converting the entry name to the key.
+     * @param valueType      Type of the value.
+     */
+    protected MappedMapContainer(@NotNull Function<K, String> keyTransformer, @NotNull Function<String, K> keyComposer, @NotNull Class<V> valueType) {
+        super(keyTransformer, keyComposer, valueType);
+    }
+
+    /**
+     * Gets the segment file that is mapped.
+     *
+     * @return The segment file.
+     */
+    protected @NotNull File getSegmentFile() {
+        return new File(this.getParentFolder(), SegmentStorage.DEFAULT_FILE_NAME);
+    }
+
+    @Override
+    protected @NotNull IContainerStorage createStorage() {
+        return new MappedSegmentStorage(this.getSegmentFile());
+    }
+
+    /**
+     * Checks if the object exists, without decoding it.
+     *
+     * @param key Key to the object.
+     * @return True if the object is loaded or stored in the segment file.
+     */
+    public boolean contains(@NotNull K key) {
+        return this.containsKeyLocally(key) || this.getMappedStorage().contains(this.getKeyTransformer().apply(key));
+    }
+
+    /**
+     * Gets the amount of objects stored in the segment file.
+     *
+     * @return The amount of objects.
+     */
+    public int size() {
+        return this.getMappedStorage().size();
+    }
+
+    /**
+     * Loads an object if it exists.
+     * <p>
+     * Unlike {@link #loadData(Object)}, missing objects are not created with {@code emptyValue}.
+     * </p>
+     *
+     * @param key Key to the object.
+     * @return The object or null if it doesn't exist.
+     */
+    public @Nullable V find(@NotNull K key) {
+        V cached = this.retrieveLocally(key);
+        if (cached != null) {
+            return cached;
+        }
+        V read = this.read(this.getKeyTransformer().apply(key));
+        if (read != null) {
+            this.storeLocally(key, read);
+        }
+        return read;
+    }
+
+    /**
+     * Maps the segment file without decoding any objects.
+     * <p>
+     * Objects are decoded lazily when they are loaded.
+     * </p>
+     */
+    @Override
+    public void loadAllData() {
+        this.getStorage();
+    }
+
+    @Override
+    public void loadAllData(@NotNull ForkJoinPool pool) {
+        this.loadAllData();
+    }
+
+    @Override
+    public @NotNull CompletableFuture<IntSupplier> readAllData(@NotNull ForkJoinPool pool) {
+        return CompletableFuture.completedFuture(() -> {
+            this.loadAllData();
+            return -1;
+        });
+    }
+
+    /**
+     * Unloads the object from the cache, nothing is written.
+     *
+     * @param key Key to the object.
+     */
+    @Override
+    public void saveData(@NotNull K key) {
+        this.cleanLocally(key);
+    }
+
+    /**
+     * Unloads the object from the cache, nothing is written.
+     *
+     * @param key Key to the object.
+     * @return Completed future.
+     */
+    @Override
+    public @NotNull CompletableFuture<Void> saveDataAsync(@NotNull K key) {
+        this.cleanLocally(key);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public @NotNull CompletableFuture<Void> updateAsync(@NotNull K key) {
+        throw new UnsupportedOperationException("Container is read-only.");
+    }
+
+    @Override
+    public void update(@NotNull K key) {
+        throw new UnsupportedOperationException("Container is read-only.");
+    }
+
+    @Override
+    public void writeData(@NotNull K key, @Nullable V value) {
+        throw new UnsupportedOperationException("Container is read-only.");
+    }
+
+    /**
+     * Read-only objects never need to be written.
+     *
+     * @return Empty list.
+     */
+    @Override
+    public @NotNull List<K> getSaveCandidates() {
+        return List.of();
+    }
+
+    @Override
+    public int migrate(@NotNull IContainerCodec from) {
+        throw new UnsupportedOperationException("Container is read-only.");
+    }
+
+    private @NotNull MappedSegmentStorage getMappedStorage() {
+        if (this.getStorage() instanceof MappedSegmentStorage storage) {
+            return storage;
+        }
+        throw new IllegalStateException("Storage of a mapped container must be a MappedSegmentStorage.");
+    }
+}
@@ -1,20 +1,36 @@
 package com.marcusslover.plus.lib.container.type;
 
-import com.google.gson.Gson;
 import com.marcusslover.plus.lib.container.AbstractContainer;
+import com.marcusslover.plus.lib.container.LoadProgress;
+import com.marcusslover.plus.lib.container.codec.IContainerCodec;
+import com.marcusslover.plus.lib.container.extra.WriteBehind;
+import com.marcusslover.plus.lib.container.io.CountingOutputStream;
+import com.marcusslover.plus.lib.container.io.WriteBehindQueue;
+import com.marcusslover.plus.lib.file.FileUtils;
+import lombok.AccessLevel;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntSupplier;
 
 /**
  * Container that represents a single object.
- * The object is serialized to a single json file.
+ * The object is serialized to a single file,
+ * the format of the file is defined by {@link #getCodec()}.
  * The file name is final and can be changed in the constructor.
  *
  * @param <V> Value type.
@@ -25,6 +41,16 @@ public abstract class SingleContainer<V> extends AbstractContainer<V> {
     private final Class<V> valueType;
     private final String fileName;
     protected @Nullable V cache = null;
+    /*Encoded data pending to be written by the write-behind mode and async functions*/
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private volatile @Nullable WriteBehindQueue<String, byte[]> writeQueue;
+    /*Read started by loadDataAsync, not yet put in the cache*/
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private volatile @Nullable CompletableFuture<V> asyncLoad;
 
     /**
      * Creates a new instance of an object.
@@ -38,7 +64,15 @@ public abstract class SingleContainer<V> extends AbstractContainer<V> {
 
     @Override
     public void update(@NotNull V value) {
-        this.writeData(this.retrieveLocally());
+        this.persist(this.retrieveLocally());
+    }
+
+    @Override
+    public void flush() {
+        WriteBehindQueue<String, byte[]> queue = this.writeQueue;
+        if (queue != null) {
+            queue.flush();
+        }
     }
 
     /**
@@ -48,19 +82,103 @@ public abstract class SingleContainer<V> extends AbstractContainer<V> {
      */
     public @NotNull V loadData() {
         if (this.cache != null) {
+            this.getMetrics().recordCacheHit();
             return this.cache;
         }
-        V data = this.readData();
+        this.getMetrics().recordCacheMiss();
+        /*Takes over a read started by loadDataAsync, so the same object ends up in the cache*/
+        CompletableFuture<V> running = this.asyncLoad;
+        this.asyncLoad = null;
+        V data = running == null ? this.readData() : running.join();
         this.storeLocally(data);
         return data;
     }
 
+    /**
+     * Loads an object from the file asynchronously.
+     * <p>
+     * The file is read on the container read executor and the future is completed there,
+     * so it is safe to wait for it on the main thread. The object is put in the cache
+     * on the main thread afterwards, {@link #loadData()} called before that
+     * returns the same object. Callbacks of the future run on the reader thread,
+     * use {@link #loadDataAsyncOnMainThread()} to handle the object on the main thread.
+     * </p>
+     *
+     * @return Future of the object.
+     */
+    public @NotNull CompletableFuture<V> loadDataAsync() {
+        V cached = this.cache;
+        if (cached != null) {
+            this.getMetrics().recordCacheHit();
+            return CompletableFuture.completedFuture(cached);
+        }
+        CompletableFuture<V> running = this.asyncLoad;
+        if (running != null) {
+            return running;
+        }
+        this.getMetrics().recordCacheMiss();
+        CompletableFuture<V> read = CompletableFuture.supplyAsync(this::readData, this.getReadExecutor());
+        this.asyncLoad = read;
+        read.whenCompleteAsync((data, throwable) -> {
+            /*Not taken over by loadData in the meantime*/
+            if (this.asyncLoad == read) {
+                this.asyncLoad = null;
+                if (throwable == null && this.cache == null) {
+                    this.storeLocally(data);
+                }
+            }
+        }, this.getMainThreadExecutor());
+        return read;
+    }
+
+    /**
+     * Loads an object from the file asynchronously and completes on the main thread.
+     * <p>
+     * The future is completed once the object is in the cache, its callbacks run
+     * on the main thread. Never wait for it on the main thread, it would never complete.
+     * </p>
+     *
+     * @return Future of the object.
+     */
+    public @NotNull CompletableFuture<V> loadDataAsyncOnMainThread() {
+        return this.loadDataAsync().thenApplyAsync(data -> {
+            /*The object might have been loaded in the meantime*/
+            V loaded = this.cache;
+            if (loaded != null) {
+                return loaded;
+            }
+            this.asyncLoad = null;
+            this.storeLocally(data);
+            return data;
+        }, this.getMainThreadExecutor());
+    }
+
     @Override
     public void loadAllData() {
         V v = this.readData();
         this.storeLocally(v);
     }
 
+    /**
+     * Reads the file on the given pool, the data is put in the cache by the returned task.
+     *
+     * @param pool     Pool used to read the file.
+     * @param progress Progress of the read.
+     * @return Future of the task loading the data.
+     */
+    @Override
+    public @NotNull CompletableFuture<IntSupplier> readAllData(@NotNull ForkJoinPool pool, @NotNull LoadProgress progress) {
+        progress.setTotal(1);
+        return CompletableFuture.supplyAsync(() -> {
+            V data = this.readData();
+            progress.increment();
+            return data;
+        }, pool).thenApply(data -> () -> {
+            this.storeLocally(data);
+            return 1;
+        });
+    }
+
     /**
      * Unloads the data from the cache and saves it to the file.
      */
@@ -69,11 +187,41 @@ public abstract class SingleContainer<V> extends AbstractContainer<V> {
             return;
         }
         V data = this.retrieveLocally();
-        this.writeData(data);
+        this.persist(data);
         this.cleanLocally();
     }
 
 
+    /**
+     * Unloads the data from the cache and saves it to the file asynchronously.
+     * <p>
+     * The data is unloaded right away, the file is written on the container I/O executor.
+     * </p>
+     *
+     * @return Future completed once the data is written.
+     */
+    public @NotNull CompletableFuture<Void> saveDataAsync() {
+        if (this.cache == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> future = this.enqueue(this.retrieveLocally());
+        this.cleanLocally();
+        return future;
+    }
+
+    /**
+     * Saves the data to the file asynchronously.
+     * <p>
+     * The data stays in the cache, the file is written on the container I/O executor.
+     * In write-behind mode the future completes once the pending write is flushed.
+     * </p>
+     *
+     * @return Future completed once the data is written.
+     */
+    public @NotNull CompletableFuture<Void> updateAsync() {
+        return this.enqueue(this.retrieveLocally());
+    }
+
     /**
      * Cleans the local cache.
      * <p>
@@ -119,47 +267,214 @@ public abstract class SingleContainer<V> extends AbstractContainer<V> {
      * @return The object.
      */
     public @NotNull V readData() {
-        V data;
-        Gson gson = this.getGson();
-        File file = new File(this.getParentFolder(), this.fileName + ".json");
-        if (file.exists()) {
-            try (FileReader fileReader = new FileReader(file)) {
-                data = gson.fromJson(fileReader, this.valueType);
+        /*Pending writes are newer than the file*/
+        WriteBehindQueue<String, byte[]> queue = this.writeQueue;
+        WriteBehindQueue.Pending<byte[]> pending = queue == null ? null : queue.peek(this.fileName);
+        if (pending != null) {
+            byte[] bytes = pending.value();
+            if (bytes == null) {
+                return this.emptyValue();
+            }
+            try {
+                return Objects.requireNonNullElseGet(this.getCodec().<V>decode(new ByteArrayInputStream(bytes), this.valueType), this::emptyValue);
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
-            return data;
+        }
+        IContainerCodec codec = this.getCodec();
+        File file = this.getFile(codec);
+        if (file.exists()) {
+            long start = System.nanoTime();
+            V value = this.read(file, codec);
+            this.getMetrics().recordRead(this.fileName, System.nanoTime() - start, file.length());
+            return value;
         } else {
             return this.emptyValue();
         }
     }
 
+    private V read(@NotNull File file, @NotNull IContainerCodec codec) {
+        try (InputStream inputStream = new BufferedInputStream(new FileInputStream(file))) {
+            return codec.decode(inputStream, this.valueType);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     /**
      * Writes the data to the file.
      * <p>
      * This function does not unload anything from the cache.
      * The cache is not affected by this function.
+     * The file is replaced atomically, so it is never left half-written.
      * If you want to delete the file, set the value to null!
+     * A pending write is replaced, so it never overwrites this one.
      * </p>
      *
      * @param value Object to write.
      */
     public void writeData(@Nullable V value) {
-        Gson gson = this.getGson();
-        File file = new File(this.getParentFolder(), this.fileName + ".json");
+        WriteBehindQueue<String, byte[]> queue = this.writeQueue;
+        if (queue == null) {
+            this.write(value);
+        } else {
+            queue.writeThrough(this.fileName, () -> this.write(value));
+        }
+    }
+
+    private void write(@Nullable V value) {
+        long start = System.nanoTime();
+        IContainerCodec codec = this.getCodec();
+        File file = this.getFile(codec);
         if (value == null) {
+            if (!file.exists()) {
+                return;
+            }
             boolean delete = file.delete();
             if (!delete) {
                 throw new RuntimeException("Could not delete file: " + file.getAbsolutePath());
             }
+            this.getMetrics().recordWrite(this.fileName, System.nanoTime() - start, 0L);
             return;
         }
-        try (FileWriter fileWriter = new FileWriter(file)) {
-            gson.toJson(value, fileWriter);
-            fileWriter.flush();
+        CountingOutputStream[] counting = new CountingOutputStream[1];
+        try {
+            FileUtils.writeAtomically(file, outputStream -> {
+                counting[0] = new CountingOutputStream(outputStream);
+                codec.encode(value, value.getClass(), counting[0]);
+            });
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+        this.getMetrics().recordWrite(this.fileName, System.nanoTime() - start, counting[0] == null ? 0L : counting[0].getCount());
+    }
+
+    /**
+     * Writes the encoded data to the file.
+     *
+     * @param bytes Encoded data, null to delete the file.
+     */
+    private void writeEncoded(byte @Nullable [] bytes) {
+        if (bytes == null) {
+            this.write(null);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            FileUtils.writeAtomically(this.getFile(this.getCodec()), outputStream -> outputStream.write(bytes));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        this.getMetrics().recordWrite(this.fileName, System.nanoTime() - start, bytes.length);
+    }
+
+    /**
+     * Queues the data to be written on the container I/O executor.
+     * <p>
+     * The data is encoded right away, on the calling thread,
+     * so it can be modified again while the write is pending.
+     * </p>
+     *
+     * @param value Data to write, null to delete the file.
+     * @return Future completed once the data is written.
+     */
+    private @NotNull CompletableFuture<Void> enqueue(@Nullable V value) {
+        byte[] bytes = null;
+        if (value != null) {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            try {
+                this.getCodec().encode(value, value.getClass(), outputStream);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            bytes = outputStream.toByteArray();
+        }
+        return this.getWriteQueue().enqueue(this.fileName, bytes);
+    }
+
+    @Override
+    protected int getCachedCount() {
+        return this.cache == null ? 0 : 1;
+    }
+
+    /**
+     * Converts the json file, the default format of containers, to the current format.
+     *
+     * @return True if the file was converted, false if there was nothing to convert.
+     * @see #migrate(IContainerCodec)
+     */
+    public boolean migrate() {
+        return this.migrate(IContainerCodec.json(this.getGson()));
     }
-}
 
+    /**
+     * Converts the file written with another codec to the current format.
+     * <p>
+     * The file is read with the given codec and written again using {@link #getCodec()},
+     * the old file is deleted afterwards. The cache is not affected.
+     * </p>
+     *
+     * @param from Codec the file was written with.
+     * @return True if the file was converted, false if there was nothing to convert.
+     */
+    public boolean migrate(@NotNull IContainerCodec from) {
+        File file = this.getFile(from);
+        if (!file.exists()) {
+            return false;
+        }
+        V value = this.read(file, from);
+        if (value == null) {
+            return false;
+        }
+        File target = this.getFile(this.getCodec());
+        try {
+            FileUtils.writeAtomically(target, outputStream -> this.getCodec().encode(value, value.getClass(), outputStream));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        if (!target.equals(file) && !file.delete()) {
+            throw new RuntimeException("Could not delete file: " + file.getAbsolutePath());
+        }
+        return true;
+    }
+
+    private @NotNull File getFile(@NotNull IContainerCodec codec) {
+        return new File(this.getParentFolder(), this.fileName + "." + codec.getExtension());
+    }
+
+    /**
+     * Persists the data.
+     * <p>
+     * In write-behind mode the data is only queued and written later,
+     * otherwise it is written right away with {@link #writeData(V)}.
+     * </p>
+     *
+     * @param value Object to persist.
+     */
+    protected void persist(@Nullable V value) {
+        if (this.isWriteBehind()) {
+            this.enqueue(value);
+        } else {
+            this.writeData(value);
+        }
+    }
+
+    private @NotNull WriteBehindQueue<String, byte[]> getWriteQueue() {
+        WriteBehindQueue<String, byte[]> queue = this.writeQueue;
+        if (queue != null) {
+            return queue;
+        }
+        synchronized (this) {
+            queue = this.writeQueue;
+            if (queue == null) {
+                /*Without write-behind, async writes are performed right away*/
+                WriteBehind writeBehind = this.getWriteBehind();
+                long delay = writeBehind == null ? 0L : writeBehind.delay();
+                int batchSize = writeBehind == null ? 1 : writeBehind.batchSize();
+                queue = new WriteBehindQueue<>((fileName, bytes) -> this.writeEncoded(bytes), this.getExecutor(), delay, batchSize);
+                this.writeQueue = queue;
+            }
+        }
+        return queue;
+    }
+}
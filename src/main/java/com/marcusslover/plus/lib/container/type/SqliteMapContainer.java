@@ -0,0 +1,93 @@
+package com.marcusslover.plus.lib.container.type;
+
+import com.marcusslover.plus.lib.container.storage.IContainerStorage;
+import com.marcusslover.plus.lib.container.storage.SqliteStorage;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Variant of {@link MapContainer} that keeps the objects in an embedded SQLite database.
+ * <p>
+ * The container works exactly like a map container, {@code loadData}, {@code saveData},
+ * {@code update} and {@code retrieveLocally} behave the same, only the storage differs.
+ * Instead of a file per object, all the objects are rows of a single database file
+ * written by {@link SqliteStorage}. Writes are committed in batches by a single writer thread,
+ * so saving many objects at once, e.g. with {@link #saveAllData()}, is a single transaction.
+ * </p>
+ * <p>
+ * Existing files of a map container can be moved into the database with {@code migrate}.
+ * Call {@link #close()} when the plugin is disabling to commit everything and release the database.
+ * </p>
+ *
+ * @param <K> Key type.
+ * @param <V> Value type.
+ */
+public abstract class SqliteMapContainer<K, V> extends MapContainer<K, V> {
+
+    /**
+     * Creates a new SQLite map container.
+     *
+     * @param keyTransformer Function converting the key to the entry name.
+     * @param keyComposer    Function converting the entry name to the key.
+     * @param valueType      Type of the value.
+     */
+    protected SqliteMapContainer(@NotNull Function<K, String> keyTransformer, @NotNull Function<String, K> keyComposer, @NotNull Class<V> valueType) {
+        super(keyTransformer, keyComposer, valueType);
+    }
+
+    /**
+     * Gets the database file.
+     *
+     * @return The database file.
+     */
+    protected @NotNull File getDatabaseFile() {
+        return new File(this.getParentFolder(), SqliteStorage.DEFAULT_FILE_NAME);
+    }
+
+    /**
+     * Gets the time the writes are buffered before they are committed together.
+     *
+     * @return The delay in milliseconds.
+     */
+    protected long getCommitDelay() {
+        return SqliteStorage.DEFAULT_COMMIT_DELAY;
+    }
+
+    @Override
+    protected @NotNull IContainerStorage createStorage() {
+        return new SqliteStorage(this.getDatabaseFile(), this.getCommitDelay());
+    }
+
+    /**
+     * Unloads all the objects from the cache and saves them in a single transaction.
+     * <p>
+     * This function blocks until the transaction is committed.
+     * </p>
+     */
+    public void saveAllData() {
+        for (K key : List.copyOf(this.cache.keySet())) {
+            this.saveData(key);
+        }
+        this.flush();
+    }
+
+    /**
+     * Commits all the pending objects and closes the database.
+     * <p>
+     * Objects still in the cache are not saved -> Use {@link #saveAllData()} before that.
+     * The container must not be used afterwards.
+     * </p>
+     */
+    public void close() {
+        this.flush();
+        try {
+            this.getStorage().close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -2,20 +2,31 @@ package com.marcusslover.plus.lib.events;
 
 import com.destroystokyo.paper.event.executor.MethodHandleEventExecutor;
 import com.destroystokyo.paper.util.SneakyThrow;
+import com.marcusslover.plus.lib.events.annotations.Dispatch;
 import com.marcusslover.plus.lib.events.annotations.Event;
 import org.bukkit.Bukkit;
 import org.bukkit.Warning;
 import org.bukkit.event.Cancellable;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.server.PluginDisableEvent;
 import org.bukkit.plugin.AuthorNagException;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -23,14 +34,24 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class EventHandler implements Listener {
+    /* Maximum time the plugin waits for the off-thread listeners when it is disabled */
+    public static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(5L);
     private static final String PREFIX = "[EventHandler] ";
     private static EventHandler instance;
 
     private final Map<Class<? extends org.bukkit.event.Event>, EventList> subscribers = new ConcurrentHashMap<>();
+    /* Listeners of every dispatched event class merged with the listeners of its supertypes, sorted by priority */
+    private final Map<Class<?>, WrappedListener[]> resolved = new ConcurrentHashMap<>();
+    private volatile long resolvedVersion;
+    /* Whether the invocations of the listeners are timed */
+    private volatile boolean profiling;
+    private volatile OffThreadDispatcher offThreadDispatcher = new OffThreadDispatcher();
 
     private final Set<Class<? extends org.bukkit.event.Event>> injectedEvents = new HashSet<>();
+    /* Methods whose invoker could not be generated, logged only once */
+    private final Set<Method> invokerFallbacks = ConcurrentHashMap.newKeySet();
     private JavaPlugin plugin;
-    private Logger logger;
+    private Logger logger = Logger.getLogger(EventHandler.class.getName());
 
     public EventHandler() {
         instance = this;
@@ -41,10 +62,6 @@ public class EventHandler implements Listener {
     }
 
     public void subscribe(@NotNull EventListener observer) {
-        if (this.plugin == null) {
-            throw new IllegalStateException("Make sure to register the EventHandler before subscribing to events!");
-        }
-
         Set<Method> methods;
         try {
             Method[] publicMethods = observer.getClass().getMethods();
@@ -58,7 +75,13 @@ public class EventHandler implements Listener {
             this.logger.severe(PREFIX + "Failed to register events for " + observer.getClass() + " because " + e.getMessage() + " does not exist.");
             return;
         }
+        /* Only injecting the events into bukkit needs the plugin */
+        if (this.plugin == null && methods.stream().map(method -> method.getAnnotation(Event.class)).anyMatch(eh -> eh != null && eh.inject())) {
+            throw new IllegalStateException("Make sure to register the EventHandler before subscribing to events!");
+        }
 
+        /* Every listener is created first, so a failure never leaves the observer half subscribed */
+        List<Subscription> subscriptions = new ArrayList<>();
         for (final Method method : methods) {
             final Event eh = method.getAnnotation(Event.class);
             if (eh == null) {
@@ -73,8 +96,13 @@ public class EventHandler implements Listener {
                 continue;
             }
             final Class<? extends org.bukkit.event.Event> eventClass = checkClass.asSubclass(org.bukkit.event.Event.class);
+            final boolean offThread = eh.dispatch() == Dispatch.OFF_THREAD;
+            if (offThread && Cancellable.class.isAssignableFrom(eventClass)) {
+                this.logger.severe(PREFIX + "attempted to register an off-thread listener of the cancellable event " + eventClass.getName() + " on method \"" + method.toGenericString() + "\" in " + observer.getClass());
+                continue;
+            }
             method.setAccessible(true);
-            for (Class<?> clazz = eventClass; org.bukkit.event.Event.class.isAssignableFrom(clazz); clazz = clazz.getSuperclass()) {
+            for (Class<?> clazz = eventClass; this.plugin != null && org.bukkit.event.Event.class.isAssignableFrom(clazz); clazz = clazz.getSuperclass()) {
                 // This loop checks for extending deprecated events
                 if (clazz.getAnnotation(Deprecated.class) != null) {
                     Warning warning = clazz.getAnnotation(Warning.class);
@@ -98,34 +126,95 @@ public class EventHandler implements Listener {
             }
 
             try {
-                this.getSubscribers(eventClass, eh.async())
-                        .add(WrappedListener.of(observer, MethodHandles.lookup().unreflect(method), eh.priority(), eh.ignoreCancelled()));
+                subscriptions.add(new Subscription(eventClass, eh,
+                        WrappedListener.of(observer, MethodHandles.lookup().unreflect(method), EventInvoker.of(method, t -> this.onInvokerFallback(method, t)),
+                                new ListenerProfile(observer.getClass().getName() + "#" + method.getName(), eventClass),
+                                eh.priority(), eh.ignoreCancelled(), offThread)));
             } catch (Throwable t) {
                 SneakyThrow.sneaky(t);
             }
+        }
 
-            /* Check for event injection */
-            if (eh.inject() && !this.injectedEvents.contains(eventClass)) {
-                /* Inject event into this event bus allowing this class to notify observers */
-                try {
-                    Method m = EventHandler.class.getMethod("notify", org.bukkit.event.Event.class);
+        for (Subscription subscription : subscriptions) {
+            this.getSubscribers(subscription.eventClass(), subscription.eh().async()).add(subscription.listener());
+        }
+        for (Subscription subscription : subscriptions) {
+            if (subscription.eh().inject()) {
+                this.inject(subscription.eventClass(), subscription.eh());
+            }
+        }
+    }
 
-                    Bukkit.getPluginManager().registerEvent(
-                            eventClass,
-                            this,
-                            eh.injectionPriority(),
-                            new MethodHandleEventExecutor(eventClass, MethodHandles.lookup().unreflect(m)),
-                            this.plugin,
-                            eh.async());
+    /**
+     * Injects the event into this event bus, allowing this class to notify observers.
+     * <p>
+     * The executor is registered once per {@link org.bukkit.event.HandlerList}, for the class owning it,
+     * so events of subclasses sharing the list are notified only once.
+     * Abstract events and events without a handler list can't be registered in bukkit,
+     * their listeners only receive the events injected by the listeners of their subclasses.
+     * </p>
+     */
+    private void inject(Class<? extends org.bukkit.event.Event> eventClass, Event eh) {
+        Class<? extends org.bukkit.event.Event> registrationClass = getRegistrationClass(eventClass);
+        if (registrationClass == null) {
+            this.logger.warning(PREFIX + "Not injecting Event " + eventClass.getName() + ", it has no HandlerList. Its listeners are only notified of injected subclasses.");
+            return;
+        }
+        synchronized (this.injectedEvents) {
+            if (!this.injectedEvents.add(registrationClass)) {
+                return;
+            }
+        }
+        try {
+            Method m = EventHandler.class.getMethod("notify", org.bukkit.event.Event.class);
 
-                    this.injectedEvents.add(eventClass);
+            Bukkit.getPluginManager().registerEvent(
+                    registrationClass,
+                    this,
+                    eh.injectionPriority(),
+                    new MethodHandleEventExecutor(registrationClass, MethodHandles.lookup().unreflect(m)),
+                    this.plugin,
+                    eh.async());
+
+            this.logger.warning(PREFIX + "Injecting Event: " + registrationClass.getName());
+        } catch (Throwable t) {
+            synchronized (this.injectedEvents) {
+                this.injectedEvents.remove(registrationClass);
+            }
+            this.logger.log(Level.SEVERE, PREFIX + "Failed to inject Event " + registrationClass.getName(), t);
+        }
+    }
 
-                    this.logger.warning(PREFIX + "Injecting Event: " + eventClass.getName());
-                } catch (Throwable t) {
-                    SneakyThrow.sneaky(t);
+    /**
+     * Gets the class whose handler list the event is registered to in bukkit.
+     * <p>
+     * It is the event class itself or the closest superclass declaring a static {@code getHandlerList()} method.
+     * </p>
+     *
+     * @param eventClass The event class.
+     * @return The registration class, or null if the event is abstract or has no handler list.
+     */
+    public static @Nullable Class<? extends org.bukkit.event.Event> getRegistrationClass(@NotNull Class<? extends org.bukkit.event.Event> eventClass) {
+        if (Modifier.isAbstract(eventClass.getModifiers())) {
+            return null;
+        }
+        for (Class<?> clazz = eventClass; clazz != null && clazz != org.bukkit.event.Event.class && org.bukkit.event.Event.class.isAssignableFrom(clazz); clazz = clazz.getSuperclass()) {
+            try {
+                Method method = clazz.getDeclaredMethod("getHandlerList");
+                if (Modifier.isStatic(method.getModifiers())) {
+                    return clazz.asSubclass(org.bukkit.event.Event.class);
                 }
+            } catch (NoSuchMethodException ignored) {
+                // look at the superclass
             }
         }
+        return null;
+    }
+
+    private void onInvokerFallback(Method method, Throwable t) {
+        if (this.invokerFallbacks.add(method)) {
+            this.logger.warning(PREFIX + "Could not generate an invoker of \"" + method.toGenericString() + "\", it is called through a slower method handle: " + t);
+        }
     }
 
     /**
@@ -135,25 +224,171 @@ public class EventHandler implements Listener {
      * @param <T>   The type of event.
      */
     public <T extends org.bukkit.event.Event> void notify(T event) {
-        this.getSubscribers(event)
-                .sort()
-                .forEach(wrapped -> {
-                    try {
-                        var handler = wrapped.getMethodHandle();
-                        var listener = wrapped.getListener();
-                        var ignoreCancelled = wrapped.isIgnoreCancelled();
-
-                        if (event instanceof Cancellable cancellable) {
-                            if (cancellable.isCancelled() && !ignoreCancelled) {
-                                return;
-                            }
-                        }
-
-                        handler.invoke(listener, event);
-                    } catch (Throwable e) {
-                        SneakyThrow.sneaky(e);
-                    }
-                });
+        WrappedListener[] listeners = this.getResolvedListeners(event.getClass());
+        Cancellable cancellable = event instanceof Cancellable c ? c : null;
+        if (this.profiling) {
+            this.notifyProfiled(listeners, event, cancellable);
+            return;
+        }
+        for (int i = 0; i < listeners.length; i++) {
+            WrappedListener wrapped = listeners[i];
+            if (cancellable != null && cancellable.isCancelled() && !wrapped.isIgnoreCancelled()) {
+                continue;
+            }
+            /* Cancellable subclasses of the event can still be modified by later listeners, these are skipped */
+            if (wrapped.isOffThread()) {
+                if (cancellable == null) {
+                    this.offThreadDispatcher.dispatch(wrapped, event, false);
+                }
+                continue;
+            }
+            try {
+                wrapped.getInvoker().invoke(wrapped.getListener(), event);
+            } catch (Throwable e) {
+                SneakyThrow.sneaky(e);
+            }
+        }
+    }
+
+    private void notifyProfiled(WrappedListener[] listeners, org.bukkit.event.Event event, Cancellable cancellable) {
+        for (int i = 0; i < listeners.length; i++) {
+            WrappedListener wrapped = listeners[i];
+            if (cancellable != null && cancellable.isCancelled() && !wrapped.isIgnoreCancelled()) {
+                continue;
+            }
+            if (wrapped.isOffThread()) {
+                if (cancellable == null) {
+                    this.offThreadDispatcher.dispatch(wrapped, event, true);
+                }
+                continue;
+            }
+            long start = System.nanoTime();
+            try {
+                wrapped.getInvoker().invoke(wrapped.getListener(), event);
+                wrapped.getProfile().record(System.nanoTime() - start, false);
+            } catch (Throwable e) {
+                wrapped.getProfile().record(System.nanoTime() - start, true);
+                SneakyThrow.sneaky(e);
+            }
+        }
+    }
+
+    /**
+     * Enables or disables the profiling of the listeners.
+     * <p>
+     * While enabled, every invocation of a listener is timed, see {@link #getProfile()}.
+     * While disabled, dispatching costs nothing extra.
+     * </p>
+     *
+     * @param profiling True to enable profiling.
+     */
+    public void setProfiling(boolean profiling) {
+        this.profiling = profiling;
+    }
+
+    /**
+     * Checks if the listeners are profiled.
+     *
+     * @return True if profiling is enabled.
+     */
+    public boolean isProfiling() {
+        return this.profiling;
+    }
+
+    /**
+     * Takes a snapshot of the timings of all the listeners.
+     *
+     * @return The snapshots, the listeners that took the most time first.
+     */
+    public List<ListenerProfile.Snapshot> getProfile() {
+        List<ListenerProfile.Snapshot> snapshots = new ArrayList<>();
+        for (ListenerProfile profile : this.getProfiles()) {
+            snapshots.add(profile.snapshot());
+        }
+        snapshots.sort(Comparator.comparingLong(ListenerProfile.Snapshot::totalNanos).reversed());
+        return snapshots;
+    }
+
+    /**
+     * Creates a readable report of the listeners that took the most time, e.g. for a command.
+     *
+     * @param limit Maximum amount of listeners in the report.
+     * @return The lines of the report.
+     */
+    public List<String> getProfileReport(int limit) {
+        List<String> report = new ArrayList<>();
+        report.add(this.profiling ? "Event listener profile:" : "Event listener profile (profiling is disabled):");
+        for (ListenerProfile.Snapshot snapshot : this.getProfile()) {
+            if (report.size() > limit) {
+                break;
+            }
+            if (snapshot.count() > 0L) {
+                report.add(" - " + snapshot);
+            }
+        }
+        return report;
+    }
+
+    /**
+     * Resets the timings of all the listeners.
+     */
+    public void resetProfile() {
+        for (ListenerProfile profile : this.getProfiles()) {
+            profile.reset();
+        }
+    }
+
+    private Collection<ListenerProfile> getProfiles() {
+        List<ListenerProfile> profiles = new ArrayList<>();
+        for (EventList list : this.subscribers.values()) {
+            for (WrappedListener listener : list.getListeners()) {
+                profiles.add(listener.getProfile());
+            }
+        }
+        return profiles;
+    }
+
+    /**
+     * Gets the dispatcher calling the {@link Dispatch#OFF_THREAD} listeners.
+     *
+     * @return The dispatcher.
+     */
+    public OffThreadDispatcher getOffThreadDispatcher() {
+        return this.offThreadDispatcher;
+    }
+
+    /**
+     * Replaces the dispatcher calling the {@link Dispatch#OFF_THREAD} listeners, e.g. to change the amount of threads.
+     * <p>
+     * The previous dispatcher is shut down, the invocations it already queued still complete.
+     * </p>
+     *
+     * @param offThreadDispatcher The new dispatcher.
+     */
+    public void setOffThreadDispatcher(@NotNull OffThreadDispatcher offThreadDispatcher) {
+        OffThreadDispatcher previous = this.offThreadDispatcher;
+        this.offThreadDispatcher = offThreadDispatcher;
+        if (previous != offThreadDispatcher) {
+            previous.shutdown(Duration.ZERO);
+        }
+    }
+
+    /**
+     * Unsubscribe all listeners of the observer.
+     * <p>
+     * Injected events stay registered in bukkit, they just have fewer observers to notify.
+     * </p>
+     *
+     * @param observer The observer to unsubscribe.
+     */
+    public void unsubscribe(@NotNull EventListener observer) {
+        for (EventList list : this.subscribers.values()) {
+            for (WrappedListener listener : list.getListeners()) {
+                if (listener.getListener() == observer) {
+                    list.remove(listener);
+                }
+            }
+        }
     }
 
     /**
@@ -163,6 +398,7 @@ public class EventHandler implements Listener {
      */
     public <T extends org.bukkit.event.Event> void unsubscribe(T event) {
         this.subscribers.remove(event.getClass());
+        this.invalidateResolved();
 
         this.logger.warning(PREFIX + "Unsubscribing Event: " + event.getClass().getSuperclass().getName());
     }
@@ -187,7 +423,62 @@ public class EventHandler implements Listener {
     }
 
     private <T extends org.bukkit.event.Event> EventList getSubscribers(Class<T> eventClass, boolean async) {
-        return this.subscribers.computeIfAbsent(eventClass, k -> new EventList(async));
+        return this.subscribers.computeIfAbsent(eventClass, k -> new EventList(async, this::invalidateResolved));
+    }
+
+    /**
+     * Obtain the listeners receiving events of the given class.
+     * <p>
+     * These are the listeners of the class and of all its superclasses and interfaces,
+     * sorted by priority. Listeners of the same priority are ordered from the most specific type.
+     * The result is computed once per class and cached until a listener is added or removed.
+     * </p>
+     *
+     * @param eventClass The concrete event class.
+     * @return The sorted listeners, the array is shared and must not be modified.
+     */
+    WrappedListener[] getResolvedListeners(Class<?> eventClass) {
+        WrappedListener[] listeners = this.resolved.get(eventClass);
+        if (listeners != null) {
+            return listeners;
+        }
+        long version = this.resolvedVersion;
+        listeners = this.resolve(eventClass);
+        this.resolved.put(eventClass, listeners);
+        if (version != this.resolvedVersion) {
+            /* A listener was added or removed while resolving, the result might be stale */
+            this.resolved.remove(eventClass, listeners);
+        }
+        return listeners;
+    }
+
+    private WrappedListener[] resolve(Class<?> eventClass) {
+        List<WrappedListener> merged = new ArrayList<>();
+        Set<Class<?>> visited = new HashSet<>();
+        Deque<Class<?>> queue = new ArrayDeque<>();
+        queue.add(eventClass);
+        while (!queue.isEmpty()) {
+            Class<?> type = queue.poll();
+            if (!visited.add(type)) {
+                continue;
+            }
+            EventList list = this.subscribers.get(type);
+            if (list != null) {
+                merged.addAll(Arrays.asList(list.getListeners()));
+            }
+            if (type.getSuperclass() != null) {
+                queue.add(type.getSuperclass());
+            }
+            queue.addAll(Arrays.asList(type.getInterfaces()));
+        }
+        /* Stable sort, so the order of the lists is kept within the same priority */
+        merged.sort(Comparator.comparingInt(WrappedListener::getPriority));
+        return merged.toArray(new WrappedListener[0]);
+    }
+
+    private void invalidateResolved() {
+        this.resolvedVersion++;
+        this.resolved.clear();
     }
 
     /**
@@ -208,4 +499,26 @@ public class EventHandler implements Listener {
 
         return this;
     }
+
+    /**
+     * Shuts down the off-thread dispatcher when the plugin is disabled.
+     * <p>
+     * Waits up to {@link #SHUTDOWN_TIMEOUT} for the queued invocations, so the workers don't outlive the plugin.
+     * </p>
+     *
+     * @param event The event.
+     */
+    @org.bukkit.event.EventHandler(priority = EventPriority.MONITOR)
+    public void onPluginDisable(PluginDisableEvent event) {
+        if (event.getPlugin() != this.plugin) {
+            return;
+        }
+        if (!this.offThreadDispatcher.shutdown(SHUTDOWN_TIMEOUT)) {
+            this.logger.warning(PREFIX + "Off-thread listeners did not complete within " + SHUTDOWN_TIMEOUT.toSeconds() + " seconds: " + this.offThreadDispatcher.snapshot());
+        }
+    }
+
+    /* Listener created by subscribe, added once all the listeners of the observer are created */
+    private record Subscription(Class<? extends org.bukkit.event.Event> eventClass, Event eh, WrappedListener listener) {
+    }
 }
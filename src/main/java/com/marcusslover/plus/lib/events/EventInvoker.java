@@ -0,0 +1,62 @@
+package com.marcusslover.plus.lib.events;
+
+import org.bukkit.event.Event;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.function.Consumer;
+
+/**
+ * Calls a single {@link com.marcusslover.plus.lib.events.annotations.Event} method.
+ * <p>
+ * Invokers are generated once per method when the listener subscribes, see {@link #of(Method)}.
+ * Dispatching an event is then a plain interface call the JIT can inline,
+ * instead of a call of a non-constant {@link MethodHandle}.
+ * </p>
+ */
+@FunctionalInterface
+public interface EventInvoker {
+
+    /**
+     * Calls the method.
+     *
+     * @param listener The listener declaring the method.
+     * @param event    The event.
+     * @throws Throwable Anything thrown by the method.
+     */
+    void invoke(@NotNull Object listener, @NotNull Event event) throws Throwable;
+
+    /**
+     * Creates an invoker of the given method.
+     * <p>
+     * The invoker is a class generated with {@link LambdaMetafactory}, calling the method directly.
+     * If it can't be generated, e.g. because the class of the listener is not accessible,
+     * the invoker falls back to an exact invocation of a method handle, which is slower.
+     * </p>
+     *
+     * @param method     The method, taking the event as its only parameter.
+     * @param onFallback Called with the reason when the invoker falls back to the method handle.
+     * @return The invoker.
+     * @throws IllegalAccessException If the method is not accessible at all.
+     */
+    static @NotNull EventInvoker of(@NotNull Method method, @NotNull Consumer<Throwable> onFallback) throws IllegalAccessException {
+        MethodType invokedType = MethodType.methodType(void.class, Object.class, Event.class);
+        try {
+            /*The generated class is defined next to the listener, so it can call even private methods*/
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(method.getDeclaringClass(), MethodHandles.lookup());
+            MethodHandle target = lookup.unreflect(method);
+            CallSite site = LambdaMetafactory.metafactory(lookup, "invoke", MethodType.methodType(EventInvoker.class),
+                    invokedType, target, MethodType.methodType(void.class, method.getDeclaringClass(), method.getParameterTypes()[0]));
+            return (EventInvoker) site.getTarget().invokeExact();
+        } catch (Throwable t) {
+            onFallback.accept(t);
+        }
+        MethodHandle handle = MethodHandles.lookup().unreflect(method).asType(invokedType);
+        return (listener, event) -> handle.invokeExact(listener, event);
+    }
+}
@@ -1,53 +1,92 @@
 package com.marcusslover.plus.lib.events;
 
-import com.marcusslover.plus.lib.common.ReadWriteLock;
-import lombok.AllArgsConstructor;
-
+import java.util.Arrays;
 import java.util.Comparator;
-import java.util.List;
-import java.util.Objects;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.function.Consumer;
 
-@AllArgsConstructor
+/**
+ * Listeners of a single event class.
+ * <p>
+ * The listeners are kept in an immutable array sorted by priority, which is rebuilt
+ * whenever a listener is added or removed. Dispatching only reads the current array,
+ * so it never sorts, copies or locks anything.
+ * </p>
+ */
 public class EventList {
-    final List<WrappedListener> observers = new CopyOnWriteArrayList<>();
-    private final ReadWriteLock lock = new ReadWriteLock();
-    private boolean isAsync;
+    private static final WrappedListener[] EMPTY = new WrappedListener[0];
+    private static final Comparator<WrappedListener> ORDER = Comparator.comparingInt(WrappedListener::getPriority);
+
+    /* Sorted snapshot, never modified once published */
+    private volatile WrappedListener[] listeners = EMPTY;
+    private final boolean isAsync;
+    /* Called after the listeners changed */
+    private final Runnable onChange;
 
-    public void add(WrappedListener listener) {
-        this.observers.add(listener);
+    public EventList(boolean isAsync) {
+        this(isAsync, () -> {
+        });
     }
 
-    public void remove(WrappedListener listener) {
-        this.observers.remove(listener);
+    EventList(boolean isAsync, Runnable onChange) {
+        this.isAsync = isAsync;
+        this.onChange = onChange;
     }
 
-    void forEach(Consumer<WrappedListener> action) {
-        Objects.requireNonNull(action);
-        for (var t : this.observers) {
-            action.accept(t);
-        }
+    public synchronized void add(WrappedListener listener) {
+        WrappedListener[] listeners = Arrays.copyOf(this.listeners, this.listeners.length + 1);
+        listeners[listeners.length - 1] = listener;
+        /* Stable sort, listeners of the same priority keep their subscription order */
+        Arrays.sort(listeners, ORDER);
+        this.listeners = listeners;
+        this.onChange.run();
     }
 
-    public EventList sort() {
-        if (this.isAsync) {
-            /* Read Operations */
-            this.lock.readLock();
-            var sort = new java.util.ArrayList<>(this.observers);
-            this.lock.readUnlock();
-
-            sort.sort(Comparator.comparingInt(WrappedListener::getPriority));
-
-            /* Write Operations */
-            this.lock.writeLock();
-            this.observers.clear();
-            this.observers.addAll(sort);
-            this.lock.writeUnlock();
-        } else {
-            this.observers.sort(Comparator.comparingInt(WrappedListener::getPriority));
+    public synchronized void remove(WrappedListener listener) {
+        WrappedListener[] current = this.listeners;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i].equals(listener)) {
+                WrappedListener[] listeners = new WrappedListener[current.length - 1];
+                System.arraycopy(current, 0, listeners, 0, i);
+                System.arraycopy(current, i + 1, listeners, i, current.length - i - 1);
+                this.listeners = listeners;
+                this.onChange.run();
+                return;
+            }
         }
+    }
+
+    /**
+     * Gets the listeners sorted by priority.
+     * <p>
+     * The returned array is shared and must not be modified.
+     * </p>
+     *
+     * @return The sorted listeners.
+     */
+    WrappedListener[] getListeners() {
+        return this.listeners;
+    }
+
+    /**
+     * Gets the amount of listeners.
+     *
+     * @return The amount of listeners.
+     */
+    public int size() {
+        return this.listeners.length;
+    }
 
+    public boolean isAsync() {
+        return this.isAsync;
+    }
+
+    /**
+     * The listeners are always kept sorted.
+     *
+     * @return This list.
+     * @deprecated Sorting is done when a listener is added, there is no need to call it.
+     */
+    @Deprecated
+    public EventList sort() {
         return this;
     }
 }
@@ -0,0 +1,108 @@
+package com.marcusslover.plus.lib.events;
+
+import org.bukkit.event.Event;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timings of a single {@link WrappedListener}.
+ * <p>
+ * Only recorded while profiling is enabled on the {@link EventHandler}.
+ * </p>
+ */
+public class ListenerProfile {
+    private final String name;
+    private final Class<? extends Event> eventClass;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final LongAdder exceptions = new LongAdder();
+
+    /**
+     * Creates a new profile.
+     *
+     * @param name       Name of the listener method, e.g. {@code MyListener#onJoin}.
+     * @param eventClass Class of the event the method listens to.
+     */
+    public ListenerProfile(@NotNull String name, @NotNull Class<? extends Event> eventClass) {
+        this.name = name;
+        this.eventClass = eventClass;
+    }
+
+    /**
+     * Gets the name of the listener method.
+     *
+     * @return The name.
+     */
+    public @NotNull String getName() {
+        return this.name;
+    }
+
+    /**
+     * Records a single invocation.
+     *
+     * @param nanos  Duration of the invocation in nanoseconds.
+     * @param failed True if the invocation threw an exception.
+     */
+    public void record(long nanos, boolean failed) {
+        this.count.increment();
+        this.totalNanos.add(nanos);
+        if (nanos > this.maxNanos.get()) {
+            this.maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+        if (failed) {
+            this.exceptions.increment();
+        }
+    }
+
+    /**
+     * Resets the recorded timings.
+     */
+    public void reset() {
+        this.count.reset();
+        this.totalNanos.reset();
+        this.maxNanos.set(0L);
+        this.exceptions.reset();
+    }
+
+    /**
+     * Takes a snapshot of the recorded timings.
+     *
+     * @return The snapshot.
+     */
+    public @NotNull Snapshot snapshot() {
+        return new Snapshot(this.name, this.eventClass, this.count.sum(), this.totalNanos.sum(), this.maxNanos.get(), this.exceptions.sum());
+    }
+
+    /**
+     * Snapshot of the timings of a listener.
+     *
+     * @param name       Name of the listener method.
+     * @param eventClass Class of the event the method listens to.
+     * @param count      Amount of invocations.
+     * @param totalNanos Total time spent in the method in nanoseconds.
+     * @param maxNanos   Longest invocation in nanoseconds.
+     * @param exceptions Amount of invocations that threw an exception.
+     */
+    public record Snapshot(@NotNull String name, @NotNull Class<? extends Event> eventClass,
+                           long count, long totalNanos, long maxNanos, long exceptions) {
+
+        /**
+         * Gets the mean duration of an invocation.
+         *
+         * @return The mean in nanoseconds, 0 if the method was not invoked.
+         */
+        public long meanNanos() {
+            return this.count == 0L ? 0L : this.totalNanos / this.count;
+        }
+
+        @Override
+        public @NotNull String toString() {
+            return "%s(%s): %.2fms total, %.3fms avg, %.2fms max, %d calls, %d errors".formatted(
+                    this.name, this.eventClass.getSimpleName(), this.totalNanos / 1_000_000D, this.meanNanos() / 1_000_000D,
+                    this.maxNanos / 1_000_000D, this.count, this.exceptions);
+        }
+    }
+}
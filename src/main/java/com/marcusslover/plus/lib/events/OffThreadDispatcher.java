@@ -0,0 +1,215 @@
+package com.marcusslover.plus.lib.events;
+
+import com.marcusslover.plus.lib.events.annotations.Dispatch;
+import org.bukkit.Bukkit;
+import org.bukkit.event.Event;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded pool of worker threads calling the {@link Dispatch#OFF_THREAD} listeners.
+ * <p>
+ * The thread calling the event only queues the invocations, it never waits for the workers.
+ * When the queue is full the invocation is dropped and counted instead, so slow listeners
+ * can't hold up the server nor exhaust the memory. Exceptions thrown by the listeners are logged.
+ * </p>
+ * <p>
+ * The workers are daemon threads created on the first dispatch, see {@link #snapshot()} for the counters.
+ * </p>
+ */
+public class OffThreadDispatcher {
+    public static final int DEFAULT_THREADS = 2;
+    public static final int DEFAULT_QUEUE_CAPACITY = 8192;
+    private static final String PREFIX = "[EventHandler] ";
+
+    private final int threads;
+    private final int queueCapacity;
+    private final AtomicInteger threadCount = new AtomicInteger();
+    private volatile ThreadPoolExecutor executor;
+    private volatile boolean shutdown;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * Creates a new dispatcher.
+     *
+     * @param threads       Amount of worker threads.
+     * @param queueCapacity Maximum amount of queued invocations, more are dropped.
+     */
+    public OffThreadDispatcher(int threads, int queueCapacity) {
+        if (threads < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Threads and queue capacity must be positive");
+        }
+        this.threads = threads;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Creates a new dispatcher with the default amount of threads and queue capacity.
+     */
+    public OffThreadDispatcher() {
+        this(DEFAULT_THREADS, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Queues an invocation of the listener.
+     *
+     * @param listener  The listener.
+     * @param event     The event.
+     * @param profiling Whether the invocation is timed.
+     */
+    void dispatch(@NotNull WrappedListener listener, @NotNull Event event, boolean profiling) {
+        ThreadPoolExecutor executor = this.getExecutor();
+        if (executor == null) {
+            this.dropped.increment();
+            return;
+        }
+        try {
+            executor.execute(() -> this.invoke(listener, event, profiling));
+            this.submitted.increment();
+        } catch (RejectedExecutionException e) {
+            /* Queue full or shut down, the caller must not wait */
+            this.dropped.increment();
+        }
+    }
+
+    private void invoke(@NotNull WrappedListener listener, @NotNull Event event, boolean profiling) {
+        long start = profiling ? System.nanoTime() : 0L;
+        boolean failed = false;
+        try {
+            listener.getInvoker().invoke(listener.getListener(), event);
+        } catch (Throwable t) {
+            failed = true;
+            this.failed.increment();
+            Bukkit.getLogger().warning(PREFIX + "Off-thread listener " + listener.getProfile().getName() + " failed to handle " + event.getEventName());
+            t.printStackTrace();
+        } finally {
+            this.completed.increment();
+            if (profiling) {
+                listener.getProfile().record(System.nanoTime() - start, failed);
+            }
+        }
+    }
+
+    private ThreadPoolExecutor getExecutor() {
+        ThreadPoolExecutor executor = this.executor;
+        if (executor != null || this.shutdown) {
+            return executor;
+        }
+        synchronized (this) {
+            if (this.executor == null && !this.shutdown) {
+                this.executor = new ThreadPoolExecutor(this.threads, this.threads, 0L, TimeUnit.MILLISECONDS,
+                        new ArrayBlockingQueue<>(this.queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "Plus Event Worker #" + this.threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+            }
+            return this.executor;
+        }
+    }
+
+    /**
+     * Stops accepting invocations and waits for the queued ones.
+     * <p>
+     * Invocations dispatched afterwards are dropped.
+     * </p>
+     *
+     * @param timeout Maximum time to wait.
+     * @return True if all the queued invocations completed.
+     */
+    public boolean shutdown(@NotNull Duration timeout) {
+        ThreadPoolExecutor executor;
+        synchronized (this) {
+            this.shutdown = true;
+            executor = this.executor;
+        }
+        if (executor == null) {
+            return true;
+        }
+        executor.shutdown();
+        try {
+            return executor.awaitTermination(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Checks if the dispatcher was shut down.
+     *
+     * @return True if shut down.
+     */
+    public boolean isShutdown() {
+        return this.shutdown;
+    }
+
+    /**
+     * Gets the amount of worker threads.
+     *
+     * @return The amount of threads.
+     */
+    public int getThreads() {
+        return this.threads;
+    }
+
+    /**
+     * Gets the maximum amount of queued invocations.
+     *
+     * @return The queue capacity.
+     */
+    public int getQueueCapacity() {
+        return this.queueCapacity;
+    }
+
+    /**
+     * Takes a snapshot of the counters.
+     *
+     * @return The snapshot.
+     */
+    public @NotNull Snapshot snapshot() {
+        ThreadPoolExecutor executor = this.executor;
+        return new Snapshot(this.submitted.sum(), this.completed.sum(), this.failed.sum(), this.dropped.sum(),
+                executor == null ? 0 : executor.getQueue().size(), this.queueCapacity);
+    }
+
+    /**
+     * Resets the counters.
+     */
+    public void reset() {
+        this.submitted.reset();
+        this.completed.reset();
+        this.failed.reset();
+        this.dropped.reset();
+    }
+
+    /**
+     * Snapshot of the counters of the dispatcher.
+     *
+     * @param submitted     Amount of queued invocations.
+     * @param completed     Amount of completed invocations, including failed ones.
+     * @param failed        Amount of invocations that threw an exception.
+     * @param dropped       Amount of invocations dropped because the queue was full or the dispatcher shut down.
+     * @param queued        Amount of invocations currently waiting.
+     * @param queueCapacity Maximum amount of waiting invocations.
+     */
+    public record Snapshot(long submitted, long completed, long failed, long dropped, int queued, int queueCapacity) {
+
+        @Override
+        public @NotNull String toString() {
+            return "submitted=%d, completed=%d, failed=%d, dropped=%d, queued=%d/%d".formatted(
+                    this.submitted, this.completed, this.failed, this.dropped, this.queued, this.queueCapacity);
+        }
+    }
+}
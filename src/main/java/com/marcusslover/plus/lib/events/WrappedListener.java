@@ -1,6 +1,7 @@
 package com.marcusslover.plus.lib.events;
 
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 
 import java.lang.invoke.MethodHandle;
 
@@ -8,6 +9,14 @@ import java.lang.invoke.MethodHandle;
 public class WrappedListener {
     private final EventListener listener;
     private final MethodHandle methodHandle;
+    /* Generated per method, calls it without going through the method handle */
+    @EqualsAndHashCode.Exclude
+    private final EventInvoker invoker;
+    /* Only recorded while the EventHandler is profiling */
+    @EqualsAndHashCode.Exclude
+    private final ListenerProfile profile;
     private final int priority;
     private final boolean ignoreCancelled;
+    /* Queued to the OffThreadDispatcher instead of being called inline */
+    private final boolean offThread;
 }
@@ -0,0 +1,23 @@
+package com.marcusslover.plus.lib.events.annotations;
+
+/**
+ * How an event handler method is called, see {@link Event#dispatch()}.
+ */
+public enum Dispatch {
+    /**
+     * The method is called on the thread that called the event, in the order of priorities.
+     */
+    INLINE,
+    /**
+     * The method is called later on a worker thread, the thread calling the event doesn't wait for it.
+     * <p>
+     * Meant for listeners that only read the event, like analytics or logging.
+     * The method must not modify the event nor access the world, as it runs concurrently with the server.
+     * Methods listening to {@link org.bukkit.event.Cancellable} events are rejected,
+     * cancellable subclasses of other events are not delivered to the method at all.
+     * Events are dropped, instead of blocking the calling thread, if the workers can't keep up
+     * or once the plugin is disabled.
+     * </p>
+     */
+    OFF_THREAD
+}
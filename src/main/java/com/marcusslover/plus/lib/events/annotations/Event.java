@@ -51,4 +51,12 @@ public @interface Event {
      * @return The priority of the event listener.
      */
     EventPriority injectionPriority() default EventPriority.NORMAL;
+
+    /**
+     * How the event handler method is called.
+     * Look at {@link Dispatch#OFF_THREAD} for the restrictions of off-thread listeners.
+     *
+     * @return The dispatch mode.
+     */
+    Dispatch dispatch() default Dispatch.INLINE;
 }
@@ -7,7 +7,18 @@ import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class FileUtils {
     /**
@@ -119,4 +130,68 @@ public class FileUtils {
 
         return file;
     }
-}
\ No newline at end of file
+
+    /**
+     * Writes the file atomically.
+     * <br /><br />
+     * The content is written into a sibling temporary file, which is synced to the disk
+     * and then moved over the original file. A crash during the write never leaves
+     * the original file empty or half-written. The directory is synced after the move,
+     * so the new file survives a crash once this function returns.
+     * The permissions of the original file are kept.
+     *
+     * @param file   The file to write
+     * @param writer The function writing the content
+     * @throws IOException If the file could not be written
+     */
+    public static void writeAtomically(@NotNull File file, @NotNull StreamWriter writer) throws IOException {
+        Path target = file.toPath().toAbsolutePath();
+        Path directory = target.getParent();
+        /*Not created with Files#createTempFile, it would be readable by the owner only*/
+        Path temp = directory.resolve("." + file.getName() + "." + ThreadLocalRandom.current().nextLong(Long.MAX_VALUE) + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                 OutputStream outputStream = new BufferedOutputStream(Channels.newOutputStream(channel))) {
+                writer.write(outputStream);
+                outputStream.flush();
+                channel.force(true);
+            }
+            copyPermissions(target, temp);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        syncDirectory(directory);
+    }
+
+    private static void copyPermissions(@NotNull Path from, @NotNull Path to) throws IOException {
+        if (!Files.exists(from)) {
+            return;
+        }
+        try {
+            Files.setPosixFilePermissions(to, Files.getPosixFilePermissions(from));
+        } catch (UnsupportedOperationException ignored) {
+            // not a posix file system, the permissions are inherited from the directory
+        }
+    }
+
+    private static void syncDirectory(@NotNull Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ignored) {
+            // directories can't be opened on some platforms (e.g. Windows), their metadata is synced by the file system
+        }
+    }
+
+    /**
+     * Function writing content into a stream.
+     */
+    @FunctionalInterface
+    public interface StreamWriter {
+        void write(@NotNull OutputStream outputStream) throws IOException;
+    }
+}
@@ -3,12 +3,102 @@ package com.marcusslover.plus.lib.json;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.marcusslover.plus.lib.world.WorldPoint;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Type;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 public class JsonUtil {
-    public static final Gson GSON = new GsonBuilder()
-            .registerTypeAdapter(WorldPoint.class, WorldPoint.ADAPTER)
-            .create();
+    /*Adapters shared by all the Gson instances of the library*/
+    private static final Map<Type, Object> ADAPTERS = new LinkedHashMap<>();
+    /*Incremented whenever an adapter is registered, so that cached Gson instances are rebuilt*/
+    private static volatile int adapterVersion;
+    /*Cached by getGson, null once an adapter is registered*/
+    private static volatile @Nullable Gson sharedGson;
+
+    /**
+     * Gson instance with the {@link WorldPoint} adapter.
+     * <p>
+     * It is created when this class is loaded, before any shared adapter can be registered,
+     * so it never includes them. Use {@link #getGson()} instead.
+     * </p>
+     */
+    public static final Gson GSON = createGson();
 
     private JsonUtil() {
     }
+
+    /**
+     * Registers a type adapter shared by all the Gson instances of the library,
+     * e.g. {@link #getGson()} and the default Gson of containers.
+     * <p>
+     * Gson instances resolved afterwards are rebuilt with the adapter, so it can be registered at any time.
+     * Keep in mind that an adapter changes the format of the values already stored by containers.
+     * </p>
+     *
+     * @param type    Type the adapter handles.
+     * @param adapter Adapter, anything accepted by {@link GsonBuilder#registerTypeAdapter(Type, Object)}.
+     */
+    public static void registerTypeAdapter(@NotNull Type type, @NotNull Object adapter) {
+        synchronized (ADAPTERS) {
+            ADAPTERS.put(type, adapter);
+            adapterVersion++;
+            sharedGson = null;
+        }
+    }
+
+    /**
+     * Gets the version of the shared adapters, it changes whenever an adapter is registered.
+     * <p>
+     * Use it to rebuild a cached Gson instance once it is outdated.
+     * </p>
+     *
+     * @return The version.
+     */
+    public static int getAdapterVersion() {
+        return adapterVersion;
+    }
+
+    /**
+     * Gets the Gson instance with all the shared adapters and the {@link WorldPoint} adapter.
+     * <p>
+     * The instance is cached until another adapter is registered.
+     * </p>
+     *
+     * @return The Gson instance.
+     */
+    public static @NotNull Gson getGson() {
+        Gson gson = sharedGson;
+        if (gson != null) {
+            return gson;
+        }
+        synchronized (ADAPTERS) {
+            if (sharedGson == null) {
+                sharedGson = createGson();
+            }
+            return sharedGson;
+        }
+    }
+
+    /*WorldPoint adapter is not shared, containers keep writing world points as objects*/
+    private static @NotNull Gson createGson() {
+        return newBuilder()
+                .registerTypeAdapter(WorldPoint.class, WorldPoint.ADAPTER)
+                .create();
+    }
+
+    /**
+     * Creates a new Gson builder with all the shared type adapters registered.
+     *
+     * @return The builder.
+     */
+    public static @NotNull GsonBuilder newBuilder() {
+        GsonBuilder builder = new GsonBuilder();
+        synchronized (ADAPTERS) {
+            ADAPTERS.forEach(builder::registerTypeAdapter);
+        }
+        return builder;
+    }
 }
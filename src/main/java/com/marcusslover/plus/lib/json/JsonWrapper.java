@@ -70,7 +70,7 @@ public class JsonWrapper {
 
     @NotNull
     public JsonWrapper set(@NotNull String key, @Nullable Object value) {
-        JsonElement jsonElement = JsonUtil.GSON.toJsonTree(value);
+        JsonElement jsonElement = JsonUtil.getGson().toJsonTree(value);
         this.jsonObject(json -> json.add(key, jsonElement));
         return this;
     }
@@ -81,7 +81,7 @@ public class JsonWrapper {
         this.jsonObject(json -> {
             if (this.hasKey(key)) {
                 JsonElement jsonElement = json.get(key);
-                atom.set(JsonUtil.GSON.fromJson(jsonElement, type));
+                atom.set(JsonUtil.getGson().fromJson(jsonElement, type));
             } else {
                 atom.set(defaultValue);
             }
@@ -477,6 +477,24 @@ public class WorldPoint {
 
         @Override
         public WorldPoint deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
+            if (json.isJsonObject()) {
+                /*Points written field by field, before the adapter was used*/
+                var _object = json.getAsJsonObject();
+                if (!_object.has("x") || !_object.has("y") || !_object.has("z")) {
+                    throw new JsonParseException("Invalid WorldPoint: " + json);
+                }
+                return new WorldPoint(
+                        _object.get("x").getAsDouble(),
+                        _object.get("y").getAsDouble(),
+                        _object.get("z").getAsDouble(),
+
+                        _object.has("yaw") ? _object.get("yaw").getAsFloat() : 0,
+                        _object.has("pitch") ? _object.get("pitch").getAsFloat() : 0
+                );
+            }
+            if (!json.isJsonArray()) {
+                throw new JsonParseException("Invalid WorldPoint: " + json);
+            }
             var _point = json.getAsJsonArray();
 
             List<Number> numbers = new ArrayList<>();
@@ -0,0 +1,105 @@
+package tests;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.marcusslover.plus.lib.container.codec.Compression;
+import com.marcusslover.plus.lib.container.codec.IContainerCodec;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ContainerCodecTest {
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().serializeNulls().create();
+
+    @Test
+    public void roundTripTest() throws IOException {
+        for (IContainerCodec codec : List.of(IContainerCodec.json(GSON), IContainerCodec.compactJson(GSON), IContainerCodec.binary(GSON))) {
+            PlayerData data = PlayerData.sample();
+            PlayerData read = decode(codec, encode(codec, data));
+            assertEquals(data, read, codec.getExtension());
+        }
+    }
+
+    @Test
+    public void compactFormatsTest() throws IOException {
+        PlayerData data = PlayerData.sample();
+        int pretty = encode(IContainerCodec.json(GSON), data).length;
+        int compact = encode(IContainerCodec.compactJson(GSON), data).length;
+        int binary = encode(IContainerCodec.binary(GSON), data).length;
+        assertTrue(compact < pretty);
+        assertTrue(binary < compact);
+    }
+
+    @Test
+    public void compressedTest() throws IOException {
+        PlayerData data = PlayerData.sample();
+        for (IContainerCodec codec : List.of(IContainerCodec.json(GSON), IContainerCodec.binary(GSON))) {
+            byte[] plain = encode(codec, data);
+            for (Compression compression : Compression.values()) {
+                IContainerCodec compressed = IContainerCodec.compressed(codec, compression);
+                assertEquals(codec.getExtension(), compressed.getExtension());
+                assertEquals(data, decode(compressed, encode(compressed, data)), compression.name());
+                /*Files written before the compression was enabled*/
+                assertEquals(data, decode(compressed, plain), compression.name());
+            }
+            /*Files written with the other compression*/
+            byte[] gzip = encode(IContainerCodec.compressed(codec, Compression.GZIP), data);
+            assertEquals(data, decode(IContainerCodec.compressed(codec, Compression.DEFLATE), gzip));
+        }
+    }
+
+    private static byte[] encode(IContainerCodec codec, PlayerData data) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        codec.encode(data, PlayerData.class, outputStream);
+        return outputStream.toByteArray();
+    }
+
+    private static PlayerData decode(IContainerCodec codec, byte[] bytes) throws IOException {
+        return codec.decode(new ByteArrayInputStream(bytes), PlayerData.class);
+    }
+
+    private static final class PlayerData {
+        private String name;
+        private int level;
+        private long coins;
+        private double balance;
+        private boolean online;
+        private String clan;
+        private List<String> friends;
+        private Map<String, Integer> quests;
+
+        private static PlayerData sample() {
+            PlayerData data = new PlayerData();
+            data.name = "Notch";
+            data.level = 42;
+            data.coins = -1234567890123L;
+            data.balance = 15.75;
+            data.online = true;
+            data.friends = List.of("jeb_", "Dinnerbone");
+            data.quests = Map.of("daily", 3, "weekly", -1);
+            return data;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof PlayerData data)) {
+                return false;
+            }
+            return this.level == data.level && this.coins == data.coins && this.balance == data.balance
+                    && this.online == data.online && Objects.equals(this.name, data.name) && Objects.equals(this.clan, data.clan)
+                    && Objects.equals(this.friends, data.friends) && Objects.equals(this.quests, data.quests);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.name, this.level, this.coins);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package tests;
+
+import com.marcusslover.plus.lib.container.extra.Journaled;
+import com.marcusslover.plus.lib.container.extra.WriteBehind;
+import com.marcusslover.plus.lib.container.io.WriteBehindQueue;
+import com.marcusslover.plus.lib.container.type.MapContainer;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ContainerJournalTest {
+    @TempDir
+    File folder;
+
+    @Test
+    public void pendingReplayTest() throws InterruptedException {
+        SlowContainer container = open(new SlowContainer(), this.folder);
+        container.loadData("a").value = 1;
+        container.update("a");
+        /*Synced to the journal, never written to the storage*/
+        Thread.sleep(200L);
+        assertTrue(container.hasPendingWrite("a"));
+
+        /*Simulates a crash, the first container is never flushed*/
+        SlowContainer reopened = open(new SlowContainer(), this.folder);
+        assertEquals(1, reopened.replayJournal());
+        assertEquals(1, reopened.readData("a").value);
+    }
+
+    @Test
+    public void directWriteReplayTest() throws InterruptedException {
+        FastContainer container = open(new FastContainer(), this.folder);
+        container.loadData("a").value = 1;
+        container.update("a");
+        /*The queued write lands, the journal still holds it until the next checkpoint*/
+        while (container.hasPendingWrite("a")) {
+            Thread.sleep(10L);
+        }
+        Thread.sleep(200L);
+        Data data = new Data();
+        data.value = 2;
+        container.writeData("a", data);
+
+        /*Simulates a crash, the journal must not bring back the older object*/
+        FastContainer reopened = open(new FastContainer(), this.folder);
+        reopened.replayJournal();
+        assertEquals(2, reopened.readData("a").value);
+    }
+
+    @Test
+    public void coalesceTest() throws Exception {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            List<String> written = new ArrayList<>();
+            WriteBehindQueue<String, String> queue = new WriteBehindQueue<>((key, value) -> written.add(key + "=" + value), executor, 60_000L, 64);
+            CompletableFuture<Void> first = queue.enqueue("a", "1");
+            CompletableFuture<Void> second = queue.enqueue("a", "2");
+            queue.enqueue("b", null);
+            assertEquals(2, queue.size());
+            assertEquals("2", queue.peek("a").value());
+
+            queue.flush();
+            assertEquals(List.of("a=2", "b=null"), written);
+            assertTrue(queue.isEmpty());
+            /*The replaced write completes with the one that replaced it*/
+            assertTrue(first.isDone() && !first.isCompletedExceptionally());
+            assertTrue(second.isDone() && !second.isCompletedExceptionally());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void retryTest() {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            WriteBehindQueue<String, String> queue = new WriteBehindQueue<>((key, value) -> {
+                if (key.equals("broken")) {
+                    throw new IllegalStateException("Broken");
+                }
+            }, executor, 60_000L, 64);
+            CompletableFuture<Void> broken = queue.enqueue("broken", "1");
+            CompletableFuture<Void> fine = queue.enqueue("fine", "1");
+
+            /*A failing key never stops the others, it is dropped after the last attempt*/
+            for (int i = 1; i < WriteBehindQueue.MAX_ATTEMPTS; i++) {
+                assertThrows(IllegalStateException.class, queue::flush);
+                assertFalse(broken.isDone());
+            }
+            assertTrue(fine.isDone());
+            assertThrows(IllegalStateException.class, queue::flush);
+            assertTrue(broken.isCompletedExceptionally());
+            assertTrue(queue.isEmpty());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static <C extends MapContainer<String, Data>> C open(C container, File folder) {
+        container.setParentFolder(folder);
+        container.replayJournal();
+        return container;
+    }
+
+    public static class Data {
+        private int value;
+    }
+
+    @Journaled(syncDelay = 10L)
+    @WriteBehind(delay = 60_000L)
+    public static class SlowContainer extends MapContainer<String, Data> {
+        public SlowContainer() {
+            super(Function.identity(), Function.identity(), Data.class);
+        }
+
+        @Override
+        protected @NotNull Data emptyValue(@NotNull String key) {
+            return new Data();
+        }
+    }
+
+    @Journaled(syncDelay = 10L)
+    @WriteBehind(delay = 10L)
+    public static class FastContainer extends MapContainer<String, Data> {
+        public FastContainer() {
+            super(Function.identity(), Function.identity(), Data.class);
+        }
+
+        @Override
+        protected @NotNull Data emptyValue(@NotNull String key) {
+            return new Data();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package tests;
+
+import com.marcusslover.plus.lib.events.EventHandler;
+import com.marcusslover.plus.lib.events.EventListener;
+import com.marcusslover.plus.lib.events.annotations.Event;
+import org.bukkit.event.HandlerList;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EventHandlerTest {
+
+    @Test
+    public void registrationClassTest() {
+        assertEquals(ParentEvent.class, EventHandler.getRegistrationClass(ParentEvent.class));
+        /* Shares the handler list of its parent, so both are injected only once */
+        assertEquals(ParentEvent.class, EventHandler.getRegistrationClass(ChildEvent.class));
+        assertNull(EventHandler.getRegistrationClass(BaseEvent.class));
+        assertNull(EventHandler.getRegistrationClass(NoHandlersEvent.class));
+    }
+
+    @Test
+    public void resolutionTest() {
+        EventHandler handler = new EventHandler();
+        List<String> calls = new ArrayList<>();
+        handler.subscribe(new HierarchyListener(calls));
+
+        handler.notify(new ChildEvent());
+        assertEquals(List.of("base", "child", "parent"), calls);
+
+        calls.clear();
+        handler.notify(new ParentEvent());
+        assertEquals(List.of("base", "parent"), calls);
+    }
+
+    @Test
+    public void invalidationTest() {
+        EventHandler handler = new EventHandler();
+        List<String> calls = new ArrayList<>();
+        handler.subscribe(new HierarchyListener(calls));
+        handler.notify(new ChildEvent());
+
+        /* The listeners of the child were resolved, a new supertype listener must still be called */
+        calls.clear();
+        LateListener late = new LateListener(calls);
+        handler.subscribe(late);
+        handler.notify(new ChildEvent());
+        assertEquals(List.of("base", "child", "parent", "late"), calls);
+
+        calls.clear();
+        handler.unsubscribe(late);
+        handler.notify(new ChildEvent());
+        assertEquals(List.of("base", "child", "parent"), calls);
+    }
+
+    @Test
+    public void injectionWithoutPluginTest() {
+        EventHandler handler = new EventHandler();
+        List<String> calls = new ArrayList<>();
+        assertThrows(IllegalStateException.class, () -> handler.subscribe(new InjectingListener(calls)));
+
+        /* Nothing of the observer was subscribed */
+        handler.notify(new ChildEvent());
+        assertTrue(calls.isEmpty());
+    }
+
+    public abstract static class BaseEvent extends org.bukkit.event.Event {
+    }
+
+    public static class ParentEvent extends BaseEvent {
+        private static final HandlerList HANDLERS = new HandlerList();
+
+        public static HandlerList getHandlerList() {
+            return HANDLERS;
+        }
+
+        @Override
+        public @NotNull HandlerList getHandlers() {
+            return HANDLERS;
+        }
+    }
+
+    public static class ChildEvent extends ParentEvent {
+    }
+
+    public static class NoHandlersEvent extends BaseEvent {
+        @Override
+        public @NotNull HandlerList getHandlers() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    public static class HierarchyListener implements EventListener {
+        private final List<String> calls;
+
+        public HierarchyListener(List<String> calls) {
+            this.calls = calls;
+        }
+
+        @Event(inject = false, priority = 0)
+        public void onBase(BaseEvent event) {
+            this.calls.add("base");
+        }
+
+        @Event(inject = false, priority = 1)
+        public void onChild(ChildEvent event) {
+            this.calls.add("child");
+        }
+
+        @Event(inject = false, priority = 2)
+        public void onParent(ParentEvent event) {
+            this.calls.add("parent");
+        }
+    }
+
+    public static class LateListener implements EventListener {
+        private final List<String> calls;
+
+        public LateListener(List<String> calls) {
+            this.calls = calls;
+        }
+
+        @Event(inject = false, priority = 3)
+        public void onBase(BaseEvent event) {
+            this.calls.add("late");
+        }
+    }
+
+    public static class InjectingListener implements EventListener {
+        private final List<String> calls;
+
+        public InjectingListener(List<String> calls) {
+            this.calls = calls;
+        }
+
+        @Event(inject = false)
+        public void onParent(ParentEvent event) {
+            this.calls.add("parent");
+        }
+
+        @Event
+        public void onChild(ChildEvent event) {
+            this.calls.add("child");
+        }
+    }
+}
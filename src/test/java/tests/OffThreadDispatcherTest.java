@@ -0,0 +1,128 @@
+package tests;
+
+import com.marcusslover.plus.lib.events.EventHandler;
+import com.marcusslover.plus.lib.events.EventListener;
+import com.marcusslover.plus.lib.events.OffThreadDispatcher;
+import com.marcusslover.plus.lib.events.annotations.Dispatch;
+import com.marcusslover.plus.lib.events.annotations.Event;
+import org.bukkit.event.Cancellable;
+import org.bukkit.event.HandlerList;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OffThreadDispatcherTest {
+
+    @Test
+    public void dropTest() throws InterruptedException {
+        EventHandler handler = new EventHandler();
+        OffThreadDispatcher dispatcher = new OffThreadDispatcher(1, 2);
+        handler.setOffThreadDispatcher(dispatcher);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Thread> calls = new CopyOnWriteArrayList<>();
+        handler.subscribe(new BlockingListener(release, calls));
+
+        /* One invocation runs and blocks the only worker, two are queued, the others are dropped */
+        for (int i = 0; i < 10; i++) {
+            handler.notify(new ReadOnlyEvent());
+        }
+        OffThreadDispatcher.Snapshot snapshot = dispatcher.snapshot();
+        assertEquals(3L, snapshot.submitted());
+        assertEquals(7L, snapshot.dropped());
+        assertEquals(2, snapshot.queued());
+
+        release.countDown();
+        assertTrue(dispatcher.shutdown(Duration.ofSeconds(5L)));
+        assertEquals(3L, dispatcher.snapshot().completed());
+        assertEquals(3, calls.size());
+        assertFalse(calls.contains(Thread.currentThread()));
+    }
+
+    @Test
+    public void shutdownTest() {
+        EventHandler handler = new EventHandler();
+        OffThreadDispatcher dispatcher = new OffThreadDispatcher(1, 2);
+        handler.setOffThreadDispatcher(dispatcher);
+        List<Thread> calls = new CopyOnWriteArrayList<>();
+        handler.subscribe(new BlockingListener(new CountDownLatch(0), calls));
+
+        assertTrue(dispatcher.shutdown(Duration.ZERO));
+        handler.notify(new ReadOnlyEvent());
+        assertEquals(0L, dispatcher.snapshot().submitted());
+        assertEquals(1L, dispatcher.snapshot().dropped());
+        assertTrue(calls.isEmpty());
+    }
+
+    @Test
+    public void cancellableSubclassTest() throws InterruptedException {
+        EventHandler handler = new EventHandler();
+        OffThreadDispatcher dispatcher = new OffThreadDispatcher(1, 2);
+        handler.setOffThreadDispatcher(dispatcher);
+        List<Thread> calls = new CopyOnWriteArrayList<>();
+        handler.subscribe(new BlockingListener(new CountDownLatch(0), calls));
+
+        /* Neither dispatched nor called inline, later listeners could still cancel it */
+        handler.notify(new CancellableReadOnlyEvent());
+        assertEquals(0L, dispatcher.snapshot().submitted());
+        assertEquals(0L, dispatcher.snapshot().dropped());
+        assertTrue(calls.isEmpty());
+
+        handler.notify(new ReadOnlyEvent());
+        assertTrue(dispatcher.shutdown(Duration.ofSeconds(5L)));
+        assertEquals(1, calls.size());
+        assertNotEquals(Thread.currentThread(), calls.get(0));
+    }
+
+    public abstract static class BaseEvent extends org.bukkit.event.Event {
+    }
+
+    public static class ReadOnlyEvent extends BaseEvent {
+        private static final HandlerList HANDLERS = new HandlerList();
+
+        public static HandlerList getHandlerList() {
+            return HANDLERS;
+        }
+
+        @Override
+        public @NotNull HandlerList getHandlers() {
+            return HANDLERS;
+        }
+    }
+
+    public static class CancellableReadOnlyEvent extends ReadOnlyEvent implements Cancellable {
+        private boolean cancelled;
+
+        @Override
+        public boolean isCancelled() {
+            return this.cancelled;
+        }
+
+        @Override
+        public void setCancelled(boolean cancel) {
+            this.cancelled = cancel;
+        }
+    }
+
+    public static class BlockingListener implements EventListener {
+        private final CountDownLatch release;
+        private final List<Thread> calls;
+
+        public BlockingListener(CountDownLatch release, List<Thread> calls) {
+            this.release = release;
+            this.calls = calls;
+        }
+
+        @Event(inject = false, dispatch = Dispatch.OFF_THREAD)
+        public void onBase(BaseEvent event) throws InterruptedException {
+            this.calls.add(Thread.currentThread());
+            this.release.await(5L, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package tests;
+
+import com.marcusslover.plus.lib.container.storage.MappedSegmentStorage;
+import com.marcusslover.plus.lib.container.storage.SegmentStorage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SegmentStorageTest {
+    @TempDir
+    File folder;
+
+    @Test
+    public void reopenTest() throws IOException {
+        File file = new File(this.folder, "data.seg");
+        SegmentStorage storage = new SegmentStorage(file);
+        write(storage, "a", "first");
+        write(storage, "b", "second");
+        write(storage, "a", "third");
+        assertTrue(storage.delete("b"));
+        assertFalse(storage.delete("c"));
+        storage.close();
+
+        SegmentStorage reopened = new SegmentStorage(file);
+        assertEquals(Set.of("a"), Set.copyOf(reopened.list()));
+        assertEquals("third", read(reopened, "a"));
+        assertNull(reopened.read("b"));
+        reopened.close();
+    }
+
+    @Test
+    public void compactionTest() throws IOException {
+        File file = new File(this.folder, "data.seg");
+        SegmentStorage storage = new SegmentStorage(file, 1024);
+        for (int i = 0; i < 1000; i++) {
+            write(storage, "key" + (i % 10), "value" + i);
+        }
+        /*Only the latest value of each key is left after the compactions*/
+        assertTrue(storage.getDeadBytes() <= 1024 || storage.getDeadBytes() <= storage.getSize() / 2);
+        storage.compact();
+        assertEquals(0, storage.getDeadBytes());
+        assertEquals(file.length(), storage.getSize());
+        for (int i = 0; i < 10; i++) {
+            assertEquals("value" + (990 + i), read(storage, "key" + i));
+        }
+        storage.close();
+
+        SegmentStorage reopened = new SegmentStorage(file);
+        assertEquals(10, reopened.list().size());
+        assertEquals("value999", read(reopened, "key9"));
+        reopened.close();
+    }
+
+    @Test
+    public void concurrentDeleteTest() throws Exception {
+        File file = new File(this.folder, "data.seg");
+        SegmentStorage storage = new SegmentStorage(file);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            /*Deletions append while other writers wait for the shared sync*/
+            Future<?> writer = executor.submit(() -> {
+                for (int i = 0; i < 500; i++) {
+                    write(storage, "key" + (i % 10), "value" + i);
+                }
+                return null;
+            });
+            Future<?> deleter = executor.submit(() -> {
+                for (int i = 0; i < 500; i++) {
+                    write(storage, "other", "value" + i);
+                    storage.delete("other");
+                    storage.delete("key" + (i % 10));
+                }
+                return null;
+            });
+            writer.get(30L, TimeUnit.SECONDS);
+            deleter.get(30L, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertFalse(storage.list().contains("other"));
+        storage.close();
+
+        SegmentStorage reopened = new SegmentStorage(file);
+        assertFalse(reopened.list().contains("other"));
+        reopened.close();
+    }
+
+    @Test
+    public void mappedTest() throws IOException {
+        File file = new File(this.folder, "data.seg");
+        SegmentStorage storage = new SegmentStorage(file);
+        write(storage, "a", "first");
+        write(storage, "b", "second");
+        write(storage, "a", "third");
+        storage.delete("b");
+        storage.close();
+
+        MappedSegmentStorage mapped = new MappedSegmentStorage(file);
+        assertEquals(1, mapped.size());
+        assertTrue(mapped.contains("a"));
+        assertFalse(mapped.contains("b"));
+        try (InputStream inputStream = mapped.read("a")) {
+            assertNotNull(inputStream);
+            assertEquals("third", new String(inputStream.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        assertThrows(UnsupportedOperationException.class, () -> mapped.delete("a"));
+    }
+
+    @Test
+    public void mappedChunksTest() throws IOException {
+        File file = new File(this.folder, "data.seg");
+        SegmentStorage storage = new SegmentStorage(file);
+        for (int i = 0; i < 100; i++) {
+            write(storage, "key" + i, "value" + i);
+        }
+        /*Larger than a whole chunk*/
+        write(storage, "large", "x".repeat(1000));
+        write(storage, "key0", "updated");
+        storage.close();
+
+        MappedSegmentStorage mapped = new MappedSegmentStorage(file, 256);
+        assertTrue(mapped.getChunkCount() > 1);
+        assertEquals(101, mapped.size());
+        assertEquals("updated", read(mapped, "key0"));
+        assertEquals("x".repeat(1000), read(mapped, "large"));
+        for (int i = 1; i < 100; i++) {
+            assertEquals("value" + i, read(mapped, "key" + i));
+        }
+    }
+
+    private static String read(MappedSegmentStorage storage, String name) throws IOException {
+        try (InputStream inputStream = storage.read(name)) {
+            assertNotNull(inputStream);
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void write(SegmentStorage storage, String name, String value) throws IOException {
+        storage.write(name, outputStream -> outputStream.write(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String read(SegmentStorage storage, String name) throws IOException {
+        try (InputStream inputStream = storage.read(name)) {
+            assertNotNull(inputStream);
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}